@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * Keeps, for every cell of a field, a running total of recent deaths,
+ * births, kills and infections there, where older events count for less
+ * and less (each halves in weight every HALF_LIFE steps). The viewer
+ * draws these as heatmaps over the field.
+ *
+ * Rather than shrinking every cell each step, new events are added with
+ * a weight that grows each step, and values are divided by that weight
+ * when read. Only when the weight gets very large is the whole map
+ * rescaled, once in a few thousand steps.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class ActivityMap {
+
+    public static final int DEATH = 0;
+    public static final int BIRTH = 1;
+    public static final int PREDATION = 2;
+    public static final int INFECTION = 3;
+    public static final int KINDS = 4;
+
+    private static final String[] NAMES = {"Deaths", "Births", "Predation", "Infections"};
+    private static final int HALF_LIFE = 50;
+    private static final double GROWTH = Math.pow(2, 1.0 / HALF_LIFE);
+    private static final float RESCALE_LIMIT = 1e30f;
+
+    private int width;
+    private float[][] totals;
+    // The weight an event recorded now is added with.
+    private float weight;
+
+    /**
+     * Creates an empty map for the given field.
+     * @param field The field to record activity in.
+     */
+    public ActivityMap(Field field) {
+        width = field.getWidth();
+        totals = new float[KINDS][field.getDepth() * width];
+        weight = 1;
+    }
+
+    /**
+     * Records an event at a location.
+     * @param kind The kind of event, such as DEATH.
+     * @param location Where it happened.
+     */
+    public void record(int kind, Location location) {
+        totals[kind][location.getRow() * width + location.getCol()] += weight;
+    }
+
+    /**
+     * Ages every recorded event by one step.
+     */
+    public void step() {
+        weight *= GROWTH;
+        if (weight > RESCALE_LIMIT) {
+            for (float[] kindTotals : totals) {
+                for (int i = 0; i < kindTotals.length; i++) {
+                    kindTotals[i] /= weight;
+                }
+            }
+            weight = 1;
+        }
+    }
+
+    /**
+     * @param kind The kind of event, such as DEATH.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The decayed number of such events at the cell; an event this step counts as 1.
+     */
+    public float get(int kind, int row, int col) {
+        return totals[kind][row * width + col] / weight;
+    }
+
+    /**
+     * Copies the decayed number of events of one kind at every cell.
+     * @param kind The kind of event, such as DEATH.
+     * @param into Receives one value per cell, row by row.
+     */
+    public void copy(int kind, float[] into) {
+        float[] kindTotals = totals[kind];
+        for (int i = 0; i < kindTotals.length; i++) {
+            into[i] = kindTotals[i] / weight;
+        }
+    }
+
+    /**
+     * Forgets every recorded event.
+     */
+    public void clear() {
+        for (float[] kindTotals : totals) {
+            Arrays.fill(kindTotals, 0);
+        }
+        weight = 1;
+    }
+
+    /**
+     * @param kind The kind of event, such as DEATH.
+     * @return The name of that kind of event.
+     */
+    public static String getName(int kind) {
+        return NAMES[kind];
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.scene.paint.Color;
+
+/**
+ * Recycles dead animals so that births and deaths in a busy simulation
+ * reuse objects instead of allocating new ones. Each field has its own
+ * pool, with one free list per species.
+ *
+ * An animal may only be released once nothing else refers to it, which
+ * the simulator guarantees by releasing animals as it drops them from its
+ * list. Generation counters (see Animal.getGeneration) catch mistakes.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class AgentPool {
+
+    // Cap on each free list, so a population crash does not pin memory.
+    private static final int MAX_FREE = 10000;
+
+    private List<ArrayDeque<Animal>> free;
+
+    /**
+     * Creates an empty pool.
+     */
+    public AgentPool() {
+        free = new ArrayList<>();
+        for (int species = 0; species < Species.COUNT; species++) {
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Returns a dead animal to the pool for reuse.
+     * @param animal The dead animal.
+     */
+    public void release(Animal animal) {
+        assert !animal.isAlive() : "Live animal released to pool";
+        assert animal.getGeneration() % 2 == 0 : "Animal released to pool twice";
+
+        ArrayDeque<Animal> list = free.get(Species.indexOf(animal));
+        if (list.size() < MAX_FREE) {
+            animal.retire();
+            list.push(animal);
+        }
+    }
+
+    /**
+     * Gets a newborn of the given species, reusing a pooled animal if
+     * there is one. The newborn is placed in the field.
+     * @param species The species number (see Species).
+     * @param field The field to place the newborn in.
+     * @param location Where to place the newborn.
+     * @param col The color of the newborn.
+     * @param sex The gender of the newborn.
+     * @param gene The gene of the newborn.
+     * @return The newborn.
+     */
+    public Animal obtain(int species, Field field, Location location, Color col, String sex, String gene) {
+        Animal animal = free.get(species).poll();
+        if (animal != null) {
+            animal.respawn(field, location, col, sex, gene);
+            return animal;
+        }
+        switch (species) {
+            case Species.DEER:
+                return new Deer(false, field, location, col, sex, false, gene);
+            case Species.CAPYBARA:
+                return new Capybara(false, field, location, col, sex, false, gene);
+            case Species.SQUIRREL:
+                return new Squirrel(false, field, location, col, sex, false, gene);
+            case Species.JAGUAR:
+                return new Jaguar(false, field, location, col, sex, false, gene);
+            case Species.CROCODILE:
+                return new Crocodile(false, field, location, col, sex, false, gene);
+            default:
+                return new Plant(field, location, col, sex, false, gene);
+        }
+    }
+
+    /**
+     * Empties the pool.
+     */
+    public void clear() {
+        for (ArrayDeque<Animal> list : free) {
+            list.clear();
+        }
+    }
+}
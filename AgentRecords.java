@@ -0,0 +1,161 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A buffer of agent records: the starting state of a population that is
+ * being built, kept in off-heap memory until it is turned into Animal
+ * objects. WorldPopulator fills one from several threads, and
+ * Simulator.populate then creates an animal from each record. The
+ * simulation itself steps Animal objects, not these records.
+ *
+ * Each agent is a fixed-size record inside a direct buffer ("arena");
+ * arenas are added as records are, so the only heap objects are one
+ * buffer per arena, whatever the number of agents.
+ *
+ * Record layout (32 bytes, the same as in a WorldTemplate file):
+ *   0 row (int), 4 col (int), 8 age (int), 12 food level (float),
+ *   16 genome (long, the 14 gene digits as a number),
+ *   24 species (byte), 25 flags (byte); the rest is unused.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class AgentRecords {
+
+    public static final int RECORD_SIZE = 32;
+    public static final int ALIVE = 1;
+    public static final int MALE = 2;
+
+    private static final int ROW = 0;
+    private static final int COL = 4;
+    private static final int AGE = 8;
+    private static final int FOOD = 12;
+    private static final int GENOME = 16;
+    private static final int SPECIES = 24;
+    private static final int FLAGS = 25;
+
+    private static final int ARENA_SHIFT = 16;
+    private static final int ARENA_RECORDS = 1 << ARENA_SHIFT;
+    private static final int ARENA_MASK = ARENA_RECORDS - 1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle FLOAT = MethodHandles.byteBufferViewVarHandle(float[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private List<ByteBuffer> arenas;
+    private int size;
+
+    /**
+     * Creates an empty buffer.
+     */
+    public AgentRecords() {
+        arenas = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * Adds blank records to the end of the buffer, to be filled in with
+     * set(). Different records may then be set from different threads at
+     * the same time.
+     * @param count The number of records to add.
+     * @return The index of the first new record.
+     */
+    public int grow(int count) {
+        int first = size;
+        size += count;
+        while (size > arenas.size() * ARENA_RECORDS) {
+            arenas.add(ByteBuffer.allocateDirect(ARENA_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder()));
+        }
+        return first;
+    }
+
+    /**
+     * Overwrites every field of a record.
+     * @param index The record to write.
+     */
+    public void set(int index, int species, int row, int col, int age, float foodLevel, long genome, int flags) {
+        ByteBuffer arena = arena(index);
+        int base = offset(index);
+        INT.set(arena, base + ROW, row);
+        INT.set(arena, base + COL, col);
+        INT.set(arena, base + AGE, age);
+        FLOAT.set(arena, base + FOOD, foodLevel);
+        LONG.set(arena, base + GENOME, genome);
+        arena.put(base + SPECIES, (byte) species);
+        arena.put(base + FLAGS, (byte) flags);
+    }
+
+    /**
+     * @return The number of records in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getRow(int index) {
+        return (int) INT.get(arena(index), offset(index) + ROW);
+    }
+
+    public int getCol(int index) {
+        return (int) INT.get(arena(index), offset(index) + COL);
+    }
+
+    public int getAge(int index) {
+        return (int) INT.get(arena(index), offset(index) + AGE);
+    }
+
+    public float getFoodLevel(int index) {
+        return (float) FLOAT.get(arena(index), offset(index) + FOOD);
+    }
+
+    public long getGenome(int index) {
+        return (long) LONG.get(arena(index), offset(index) + GENOME);
+    }
+
+    public int getSpecies(int index) {
+        return arena(index).get(offset(index) + SPECIES);
+    }
+
+    public int getFlags(int index) {
+        return arena(index).get(offset(index) + FLAGS);
+    }
+
+    /**
+     * Packs a 14-digit gene string into a number.
+     * @param gene The gene string, or null.
+     * @return The packed gene, or -1 for no gene.
+     */
+    public static long encodeGene(String gene) {
+        return gene == null ? -1 : Long.parseLong(gene);
+    }
+
+    /**
+     * Unpacks a gene packed by encodeGene.
+     * @param genome The packed gene.
+     * @return The 14-digit gene string, or null for no gene.
+     */
+    public static String decodeGene(long genome) {
+        if (genome < 0) {
+            return null;
+        }
+        String digits = Long.toString(genome);
+        return "00000000000000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * @return The arena holding the given record.
+     */
+    private ByteBuffer arena(int index) {
+        return arenas.get(index >>> ARENA_SHIFT);
+    }
+
+    /**
+     * @return The byte offset of the given record within its arena.
+     */
+    private int offset(int index) {
+        return (index & ARENA_MASK) * RECORD_SIZE;
+    }
+}
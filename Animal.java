@@ -14,33 +14,112 @@ public abstract class Animal {
     private Location location;
     private Color color = Color.BLACK;
     private String gene;
-    private static String sex;
+    // How far away (in moves) herd or pack mates are counted.
+    protected static final int GROUP_RADIUS = 8;
+    // How much each pack mate adds to a predator's chance of a catch.
+    private static final double PACK_BONUS = 0.25;
+    // How much each herd mate takes off a predator's chance of a catch.
+    private static final double HERD_BONUS = 0.1;
+    
+    // Bit flags describing the animal.
+    private static final int MALE = 1;
+    private static final int DISEASED = 2;
+    private int flags;
+    private int diseaseCount;
+    private int generation;
+    private int lineageId = -1;
     
     /**
      * Create a new animal at location in field.
      * @param field The field currently occupied.
      * @param location The location within the field.
      * @param color The color the animal is represented as.
-     * @param sex The gender of the animal.
+     * @param sex The gender of the animal, "Male" or "Female", or null for a random one.
      * @param firstGeneration If true, the animal will have a random gene set.
      * @param parentGene The parent gene of the animal.
      */
     public Animal(Field field, Location location, Color col, String sex, boolean firstGeneration, String parentGene) {
+        init(field, location, col, sex, firstGeneration, parentGene);
+    }
+
+    /**
+     * Brings a dead animal back as a newborn, so that its object can be
+     * reused instead of allocating a new one. See AgentPool.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @param col The color the animal is represented as.
+     * @param sex The gender of the animal.
+     * @param parentGene The parent gene of the animal.
+     */
+    protected void respawn(Field field, Location location, Color col, String sex, String parentGene) {
+        assert generation % 2 == 1 : "Respawned an animal that was not pooled";
+        generation++;
+        this.location = null;
+        init(field, location, col, sex, false, parentGene);
+        resetState();
+    }
+
+    /**
+     * Resets the subclass's own state to that of a newborn.
+     * Overridden in subclasses that keep state.
+     */
+    protected void resetState() {
+    }
+
+    /**
+     * Sets the subclass's own state when the animal is loaded from a
+     * saved world. Overridden in subclasses that keep state.
+     * @param age The animal's age.
+     * @param foodLevel The animal's food level.
+     */
+    protected void restoreState(int age, double foodLevel) {
+    }
+
+    /**
+     * Counts how many times this object has been released to or taken
+     * from an AgentPool. It is odd while the object sits in a pool, and a
+     * reference holding an older count is stale.
+     * @return The generation of this object.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Marks the object as released to a pool.
+     */
+    void retire() {
+        generation++;
+    }
+
+    /**
+     * Sets up the animal; shared by the constructor and respawn.
+     */
+    private void init(Field field, Location location, Color col, String sex, boolean firstGeneration, String parentGene) {
         alive = true;
         this.field = field;
         setLocation(location);
         setColor(col);
+        // A reused animal gave its old gene and lineage record back when it died.
+        gene = null;
+        int species = Species.indexOf(this);
+        lineageId = species == Species.PLANT ? -1 : field.getLineage().add(species);
         if(firstGeneration) {
             setRandomGene();
         }
         else {
-            this.gene = parentGene;
+            setGene(parentGene);
         }
         
-        this.sex = setSex();
+        flags = 0;
+        diseaseCount = 0;
+        // Plants have no sex, so no number is drawn for them.
+        if ("Male".equals(sex) || (sex == null && species != Species.PLANT && Randomizer.getRandom().nextBoolean())) {
+            flags |= MALE;
+        }
+        // Genes are mutated once, at birth (see giveBirth), not here.
         if (this.gene != null) {
             parseGene(this.gene);
-            mutateGene(this.gene);   
         }
     }
     
@@ -64,15 +143,45 @@ public abstract class Animal {
      * It is removed from the field.
      */
     protected void setDead() {
+        releaseGene();
+        releaseLineage();
+        if (alive && field != null) {
+            field.countDeath(this);
+        }
         alive = false;
         if(location != null) {
+            field.getActivity().record(ActivityMap.DEATH, location);
             field.clear(location);
-            Plant plant = new Plant(field, location, Color.GREEN, null, false, null);
+            field.getPool().obtain(Species.PLANT, field, location, Color.GREEN, null, null);
             location = null;
             field = null;
         }
     }
 
+    /**
+     * Counts the other animals of this species in the area around this one,
+     * read from the field's spatial index rather than by looking at
+     * neighbours one by one. Mates are counted where they were when the
+     * step began (see SpatialIndex.density).
+     * @return The number of herd or pack mates nearby.
+     */
+    protected int alliesNearby() {
+        return Math.max(field.getIndex().density(Species.indexOf(this), location, GROUP_RADIUS) - 1, 0);
+    }
+
+    /**
+     * Works out the chance of a predator catching its prey: each mate in
+     * the hunting pack makes a catch more likely, each mate in the prey's
+     * herd makes it less likely.
+     * @param base The chance of a lone predator catching lone prey.
+     * @param pack The number of the predator's pack mates nearby.
+     * @param herd The number of the prey's herd mates nearby.
+     * @return The chance of a catch.
+     */
+    protected static double catchChance(double base, int pack, int herd) {
+        return Math.min(1.0, base * (1 + PACK_BONUS * pack) / (1 + HERD_BONUS * herd));
+    }
+
     /**
      * Returns the animal's location.
      * @return The animal's location.
@@ -82,6 +191,13 @@ public abstract class Animal {
     }
     
     protected void setStatus(boolean b) {
+        if (!b) {
+            releaseGene();
+            releaseLineage();
+            if (alive && field != null) {
+                field.countDeath(this);
+            }
+        }
         alive = b;
     }
     
@@ -120,12 +236,89 @@ public abstract class Animal {
         return color;
     }
     
-    public static String setSex() {
-        return (Randomizer.getRandom().nextBoolean()) ? "Male" : "Female";
+    /**
+     * @return The animal's age. Overridden in subclasses that age.
+     */
+    public int getAge() {
+        return 0;
+    }
+
+    /**
+     * @return The animal's food level. Overridden in subclasses that eat.
+     */
+    public double getFoodLevel() {
+        return 0;
+    }
+
+    /**
+     * @return Whether the animal is diseased.
+     */
+    public boolean isDiseased() {
+        return (flags & DISEASED) != 0;
+    }
+
+    /**
+     * @return The chance of catching the disease in a step. Overridden in subclasses that catch disease.
+     */
+    public double getDiseaseProbability() {
+        return 0;
+    }
+
+    /**
+     * @return How many steps the disease takes to kill. Overridden in subclasses that catch disease.
+     */
+    public int getDiseaseDuration() {
+        return 0;
+    }
+
+    /**
+     * Could gain disease. Spreading it to neighbours is done by the
+     * field's Epidemic.
+     */
+    protected void tryGainDisease() {
+        if (!isDiseased() && Randomizer.getRandom().nextDouble() <= getDiseaseProbability()) {
+            field.getEpidemic().infect(this);
+        }
+    }
+
+    /**
+     * Marks the animal as diseased.
+     */
+    void catchDisease() {
+        flags |= DISEASED;
+        diseaseCount = 0;
+    }
+
+    /**
+     * Increases the disease count.
+     * @return The number of steps the animal has now been diseased for.
+     */
+    int progressDisease() {
+        return ++diseaseCount;
     }
     
-    public static String getSex() {
-        return sex;
+    /**
+     * @return true if the animal is male.
+     */
+    public boolean isMale() {
+        return (flags & MALE) != 0;
+    }
+
+    /**
+     * @return The gender of the animal, "Male" or "Female".
+     */
+    public String getSex() {
+        return isMale() ? "Male" : "Female";
+    }
+
+    /**
+     * Checks whether another animal could breed with this one: it must be
+     * alive, of the same species and of the opposite sex.
+     * @param other The other animal.
+     * @return true if the two can breed.
+     */
+    public boolean canMateWith(Animal other) {
+        return other.getClass() == getClass() && other.isAlive() && ((other.flags ^ flags) & MALE) != 0;
     }
     
     /**
@@ -146,11 +339,48 @@ public abstract class Animal {
         
         String randomMetabolism = String.format("%03d", rand.nextInt(76) + 25);
         
-        gene = randomBreedingAge + randomLifeSpan + randomBreedingProbability 
-               + randomLitterSize + randomDiseaseProbability + randomMetabolism;
+        setGene(randomBreedingAge + randomLifeSpan + randomBreedingProbability 
+                + randomLitterSize + randomDiseaseProbability + randomMetabolism);
                
         parseGene(gene);
     }
+
+    /**
+     * Changes the animal's gene, keeping the field's GenomePool up to date.
+     * @param newGene The new gene, or null.
+     */
+    private void setGene(String newGene) {
+        releaseGene();
+        gene = newGene == null ? null : field.getGenomes().intern(Species.indexOf(this), newGene);
+    }
+
+    /**
+     * Gives the animal's gene back to the field's GenomePool, if a living
+     * animal in a field holds one.
+     */
+    private void releaseGene() {
+        if (alive && gene != null && field != null) {
+            field.getGenomes().release(Species.indexOf(this), gene);
+        }
+    }
+
+    /**
+     * Tells the field's LineageStore that the animal has died, if it is a
+     * living animal with a record.
+     */
+    private void releaseLineage() {
+        if (alive && lineageId >= 0 && field != null) {
+            field.getLineage().release(lineageId);
+            lineageId = -1;
+        }
+    }
+
+    /**
+     * @return The animal's record in its field's LineageStore, or -1 for a plant.
+     */
+    public int getLineageId() {
+        return lineageId;
+    }
     
     /**
      * @return Returns the gene.
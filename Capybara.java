@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Random;
 import javafx.scene.paint.Color;
 import java.util.Iterator;
@@ -11,21 +12,23 @@ import java.util.Iterator;
  */
 public class Capybara extends Animal {
 
-    public static int BREEDING_AGE;
-    public static int MAX_AGE;
-    public static double BREEDING_PROBABILITY;
-    public static double DISEASE_PROBABILITY;
-    public static double METABOLISM;
-    public static int MAX_LITTER_SIZE;
     public static int PLANT_FOOD_VALUE = 3;
     public static int MAX_FOOD_LEVEL = 15;
+    public static final int DISEASE_DURATION = 30;
+    // Chance of a lone predator catching a lone capybara.
+    public static final double CATCH_PROBABILITY = 0.8;
 
     private static final Random rand = Randomizer.getRandom();
     
+    // Life cycle values, read from this animal's own gene.
+    private int breedingAge;
+    private int maxAge;
+    private double breedingProbability;
+    private double diseaseProbability;
+    private double metabolism;
+    private int maxLitterSize;
     private int age;
     private double foodLevel;
-    private boolean disease;
-    private int disease_count;
 
     /**
      * Create a new capybara. A capybara may be created with age
@@ -41,17 +44,34 @@ public class Capybara extends Animal {
      */
     public Capybara(boolean randomAge, Field field, Location location, Color col, String sex, boolean firstGeneration, String parentGene) {
         super(field, location, col, sex, firstGeneration, parentGene);
-        this.disease = false;
         foodLevel = MAX_FOOD_LEVEL;
         
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
+            age = rand.nextInt(maxAge);
         }
         else {
             age = 0;
         }
     }
     
+    /**
+     * Resets the capybara to a newborn when it is reused from a pool.
+     */
+    @Override
+    protected void resetState() {
+        foodLevel = MAX_FOOD_LEVEL;
+        age = 0;
+    }
+
+    /**
+     * Sets the capybara's age and food level when it is loaded from a saved world.
+     */
+    @Override
+    protected void restoreState(int age, double foodLevel) {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+    
     /**
      * This is what the capybara does most of the time - it runs 
      * around. 
@@ -59,11 +79,18 @@ public class Capybara extends Animal {
      * @param newCapybaras A list to return newly born capybaras.
      */
     public void act(List<Animal> newCapybaras) {
+        if (!isAlive()) {
+            // Eaten or killed by illness earlier this step.
+            return;
+        }
+        long time = StepMetrics.start();
         incrementAge();
         incrementHunger();
+        time = StepMetrics.lap(StepMetrics.AGING, time);
         
         if(isAlive()) {
-            giveBirth(newCapybaras);            
+            giveBirth(newCapybaras);
+            time = StepMetrics.lap(StepMetrics.BIRTH, time);
             // Try to move into a free location.
             Location newLocation = findFood();
             
@@ -78,17 +105,15 @@ public class Capybara extends Animal {
             }
             else {
                 // Overcrowding.
+                StepMetrics.countDeath(StepMetrics.OVERCROWDING);
                 setDead();
             }
+            time = StepMetrics.lap(StepMetrics.FEEDING, time);
             
-            if (!(disease)){
+            if (isAlive()) {
                 tryGainDisease();
             }
-            else{
-                spreadDisease();
-                incrementDiseaseCount();
-            }
-            
+            StepMetrics.lap(StepMetrics.DISEASE, time);
         }
     }
 
@@ -98,7 +123,8 @@ public class Capybara extends Animal {
      */
     private void incrementAge() {
         age++;
-        if(age > MAX_AGE) {
+        if(age > maxAge && isAlive()) {
+            StepMetrics.countDeath(StepMetrics.OLD_AGE);
             setDead();
         }
     }
@@ -108,50 +134,13 @@ public class Capybara extends Animal {
      * This could result in the capybara's death.
      */
     private void incrementHunger() {
-        foodLevel = foodLevel - METABOLISM;
-        if(foodLevel <= 0) {
+        foodLevel = foodLevel - metabolism;
+        if(foodLevel <= 0 && isAlive()) {
+            StepMetrics.countDeath(StepMetrics.STARVATION);
             setDead();
         }
     }
     
-    /**
-     * Increases the disease count.
-     * This could result in the capybara's death.
-     */
-    private void incrementDiseaseCount(){
-        disease_count++;
-        if (disease_count >= 30){
-            setDead();
-        }
-    }
-    
-    /**
-     * Could gain disease.
-     */
-    private void tryGainDisease(){
-        if (rand.nextDouble() <= DISEASE_PROBABILITY){
-            disease = true;
-            disease_count = 0;
-        }
-    }
-        
-    /**
-     * Spreads disease to others.
-     */
-    private void spreadDisease(){
-        Field field = getField();
-        List<Animal> neighbours = field.getLivingNeighbours(getLocation());
-        
-        for (Animal neighbour : neighbours) {
-            if (neighbour instanceof Capybara) {
-                Capybara sNeighbour = (Capybara) neighbour;
-                if (sNeighbour.isAlive()) {
-                    sNeighbour.tryGainDisease();
-                }
-            }
-        }
-    }
-    
     /**
      * Finds food in adjacent locations.
      * @return Location gives location of where to find the food.
@@ -188,15 +177,14 @@ public class Capybara extends Animal {
     }
     
     /**
-     * @return Returns whether or not the prey successfully flees from the predator.
+     * Decides whether a hunting predator catches this capybara. The capybara is
+     * safer in a herd, and in more danger from a pack.
+     * The pack and herd are counted here, only when a catch is tried.
+     * @param hunter The predator trying to catch it.
+     * @return true if the capybara is caught.
      */
-    public boolean flee() {
-        if (rand.nextDouble() > 0.2) {
-            return true;
-        }
-        else {
-            return false;
-        }
+    public boolean isCaught(Animal hunter) {
+        return rand.nextDouble() < catchChance(CATCH_PROBABILITY, hunter.alliesNearby(), alliesNearby());
     }
     
     /**
@@ -205,35 +193,29 @@ public class Capybara extends Animal {
      * @param newCapybaras A list to return newly born capybaras.
      */
     private void giveBirth(List<Animal> newCapybaras) {
-        Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
         int births = breed();
+        if (births == 0) {
+            return;
+        }
         
-        for (int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            List<Animal> neighbors = field.getLivingNeighbours(getLocation());
-    
-            Capybara mate = null;
-            for (Animal neighbor : neighbors) {
-                if (neighbor instanceof Capybara && !this.getSex().equals(neighbor.getSex())) { 
-                    mate = (Capybara) neighbor;
-                    break;
-                }
-            }
-    
-            if (mate != null) {
-                
-                String parent1Gene = this.getGene();
-                String parent2Gene = mate.getGene();
-                String newGene = crossoverGenes(parent1Gene, parent2Gene);
-    
-                newGene = mutateGene(newGene);
-
-                boolean isMale = Math.random() < 0.5;
-    
-                Capybara young = new Capybara(false, field, loc, getColor(), isMale ? "Male" : "Female", false, newGene);
-                newCapybaras.add(young);
-            }
+        Field field = getField();
+        List<Location> free = new ArrayList<>(8);
+        Animal mate = field.findMate(this, free);
+        if (mate == null) {
+            return;
+        }
+        
+        for (int b = 0; b < births && b < free.size(); b++) {
+            String newGene = crossoverGenes(this.getGene(), mate.getGene());
+            newGene = mutateGene(newGene);
+            
+            boolean isMale = rand.nextDouble() < 0.5;
+            
+            Animal young = field.getPool().obtain(Species.CAPYBARA, field, free.get(b), getColor(), isMale ? "Male" : "Female", newGene);
+            field.getLineage().recordParents(young.getLineageId(), getLineageId(), mate.getLineageId());
+            field.getActivity().record(ActivityMap.BIRTH, free.get(b));
+            StepMetrics.countBirth();
+            newCapybaras.add(young);
         }
     }
 
@@ -244,8 +226,8 @@ public class Capybara extends Animal {
      */
     private int breed() {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && maxLitterSize > 0 && rand.nextDouble() <= breedingProbability) {
+            births = rand.nextInt(maxLitterSize) + 1;
         }
         return births;
     }
@@ -255,7 +237,39 @@ public class Capybara extends Animal {
      * @return true if the Capybara can breed, false otherwise.
      */
     private boolean canBreed() {
-        return age >= BREEDING_AGE;
+        return age >= breedingAge;
+    }
+    
+    /**
+     * @return The capybara's age.
+     */
+    @Override
+    public int getAge() {
+        return age;
+    }
+
+    /**
+     * @return The capybara's food level.
+     */
+    @Override
+    public double getFoodLevel() {
+        return foodLevel;
+    }
+
+    /**
+     * @return The chance of the capybara catching disease in a step.
+     */
+    @Override
+    public double getDiseaseProbability() {
+        return diseaseProbability;
+    }
+
+    /**
+     * @return How many steps disease takes to kill the capybara.
+     */
+    @Override
+    public int getDiseaseDuration() {
+        return DISEASE_DURATION;
     }
     
     /**
@@ -263,11 +277,11 @@ public class Capybara extends Animal {
      */
     @Override
     public void parseGene(String gene) {
-        BREEDING_AGE = Integer.parseInt(gene.substring(0, 2));
-        MAX_AGE = Integer.parseInt(gene.substring(2, 5));
-        BREEDING_PROBABILITY = (Integer.parseInt(gene.substring(5, 7))) / 100.0;
-        MAX_LITTER_SIZE = Integer.parseInt(gene.substring(7, 9));
-        DISEASE_PROBABILITY = Integer.parseInt(gene.substring(9, 11)) / 100.0;
-        METABOLISM = (Integer.parseInt(gene.substring(11, 14))) / 100.0;
+        breedingAge = Integer.parseInt(gene.substring(0, 2));
+        maxAge = Integer.parseInt(gene.substring(2, 5));
+        breedingProbability = (Integer.parseInt(gene.substring(5, 7))) / 100.0;
+        maxLitterSize = Integer.parseInt(gene.substring(7, 9));
+        diseaseProbability = Integer.parseInt(gene.substring(9, 11)) / 100.0;
+        metabolism = (Integer.parseInt(gene.substring(11, 14))) / 100.0;
     }
 }
\ No newline at end of file
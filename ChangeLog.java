@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Records which cells of a field have had an animal placed in or cleared
+ * from them, so that a copy of the field can be brought up to date by
+ * looking at those cells only.
+ *
+ * Each cell is listed once however often it changes. Clearing the whole
+ * field marks every cell as changed at once instead of listing them.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class ChangeLog {
+
+    private int width;
+    private boolean[] marked;
+    private int[] cells = new int[256];
+    private int count;
+    private boolean all = true;
+
+    /**
+     * Creates a log for a field, with every cell counted as changed.
+     * @param field The field to record.
+     */
+    public ChangeLog(Field field) {
+        width = field.getWidth();
+        marked = new boolean[field.getDepth() * width];
+    }
+
+    /**
+     * Records that a cell has changed.
+     */
+    public void mark(int row, int col) {
+        int cell = row * width + col;
+        if (all || marked[cell]) {
+            return;
+        }
+        marked[cell] = true;
+        if (count == cells.length) {
+            cells = Arrays.copyOf(cells, count * 2);
+        }
+        cells[count++] = cell;
+    }
+
+    /**
+     * Records that every cell may have changed.
+     */
+    public void markAll() {
+        reset();
+        all = true;
+    }
+
+    /**
+     * @return Whether every cell may have changed since the last reset.
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * @return The number of cells listed as changed.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i From 0 to size() - 1.
+     * @return A changed cell, as row * width + col.
+     */
+    public int get(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Forgets the changes recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < count; i++) {
+            marked[cells[i]] = false;
+        }
+        count = 0;
+        all = false;
+    }
+}
@@ -41,6 +41,14 @@ public class Counter {
         count++;
     }
 
+    /**
+     * Adds to the current count.
+     * @param amount How much to add.
+     */
+    public void add(int amount) {
+        count += amount;
+    }
+
     /**
      * Resets the current count to zero.
      */
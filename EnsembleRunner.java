@@ -0,0 +1,175 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the same simulation from many seeds in parallel, to show how much
+ * the outcome depends on chance.
+ *
+ * Each replica's population of each species at each step is folded into
+ * running statistics as soon as the replica finishes: the mean and
+ * variance by Welford's method, and quantiles by a QuantileSketch. Memory
+ * therefore depends on the number of steps, not the number of replicas,
+ * and the result is a band per step rather than every trajectory.
+ *
+ * Each replica draws from its own generator (see Randomizer), and each
+ * animal reads its breeding values from its own gene, so replicas running
+ * at the same time do not affect each other. A replica gives the same
+ * result on any number of threads, and every replica may be stored in the
+ * ResultCache.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class EnsembleRunner {
+
+    private static final double COMPRESSION = 100;
+    private static final double[] QUANTILES = {0.05, 0.5, 0.95};
+
+    private final int depth, width, steps;
+    private long replicas;
+    // Indexed by step, then species.
+    private final double[][] mean, squares;
+    private final QuantileSketch[][] sketches;
+
+    /**
+     * @param depth Depth of each replica's field.
+     * @param width Width of each replica's field.
+     * @param steps How many steps each replica runs.
+     */
+    public EnsembleRunner(int depth, int width, int steps) {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        mean = new double[steps + 1][Species.COUNT];
+        squares = new double[steps + 1][Species.COUNT];
+        sketches = new QuantileSketch[steps + 1][Species.COUNT];
+        for (int step = 0; step <= steps; step++) {
+            for (int species = 0; species < Species.COUNT; species++) {
+                sketches[step][species] = new QuantileSketch(COMPRESSION);
+            }
+        }
+    }
+
+    /**
+     * Runs replicas from consecutive seeds and adds them to the statistics.
+     * @param firstSeed The seed of the first replica.
+     * @param count The number of replicas.
+     * @param threads How many replicas to run at once.
+     */
+    public void run(long firstSeed, int count, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long seed = firstSeed + i;
+                results.add(executor.submit(() -> add(runReplica(seed))));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("A replica failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one replica on the current thread, or reads it from the
+     * result cache if it has been run before (see HeadlessRunner).
+     * @param seed The replica's seed.
+     * @return The population of each species at each step.
+     */
+    private int[][] runReplica(long seed) {
+        return HeadlessRunner.run(seed, depth, width, steps);
+    }
+
+    /**
+     * Folds one replica's trajectory into the statistics.
+     */
+    private synchronized void add(int[][] trajectory) {
+        replicas++;
+        for (int step = 0; step <= steps; step++) {
+            for (int species = 0; species < Species.COUNT; species++) {
+                int value = trajectory[step][species];
+                double delta = value - mean[step][species];
+                mean[step][species] += delta / replicas;
+                squares[step][species] += delta * (value - mean[step][species]);
+                sketches[step][species].add(value);
+            }
+        }
+    }
+
+    /**
+     * @return The number of replicas added so far.
+     */
+    public synchronized long getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return The mean population of a species at a step.
+     */
+    public synchronized double getMean(int step, int species) {
+        return mean[step][species];
+    }
+
+    /**
+     * @return The sample standard deviation of a species' population at a step.
+     */
+    public synchronized double getStandardDeviation(int step, int species) {
+        return replicas < 2 ? 0 : Math.sqrt(squares[step][species] / (replicas - 1));
+    }
+
+    /**
+     * @param quantile From 0 to 1.
+     * @return An estimate of that quantile of a species' population at a step.
+     */
+    public synchronized double getQuantile(int step, int species, double quantile) {
+        return sketches[step][species].getQuantile(quantile);
+    }
+
+    /**
+     * Writes the bands as CSV: one line per step and species, with the
+     * mean, standard deviation and the 5th, 50th and 95th percentiles.
+     * @param out Where to write.
+     */
+    public synchronized void writeBands(PrintStream out) {
+        out.println("step,species,mean,sd,p05,p50,p95");
+        for (int step = 0; step <= steps; step++) {
+            for (int species = 0; species < Species.COUNT; species++) {
+                out.printf("%d,%s,%.2f,%.2f", step, Species.getName(species),
+                           mean[step][species], getStandardDeviation(step, species));
+                for (double quantile : QUANTILES) {
+                    out.printf(",%.1f", sketches[step][species].getQuantile(quantile));
+                }
+                out.println();
+            }
+        }
+    }
+
+    /**
+     * Runs an ensemble and prints its bands.
+     * Run with: java EnsembleRunner replicas steps [depth] [width] [threads] [first seed]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : depth;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long firstSeed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        EnsembleRunner ensemble = new EnsembleRunner(depth, width, steps);
+        long start = System.nanoTime();
+        ensemble.run(firstSeed, count, threads);
+        System.err.printf("%d replicas of %d steps in %.1f s%n", count, steps, (System.nanoTime() - start) / 1e9);
+        ensemble.writeBands(System.out);
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the spread of disease as its own phase of each step, separate from
+ * the animals' act() methods, in the manner of an SIR model update over
+ * the grid:
+ *
+ *  1. progress: every infected animal gets one step sicker and dies once
+ *     it has been ill for its species' disease duration;
+ *  2. spread: every surviving infected animal may pass the disease to
+ *     each neighbour of its own species, with that neighbour's disease
+ *     probability.
+ *
+ * Only infected animals are visited, so the cost follows the size of the
+ * epidemic rather than the size of the field. The spread phase runs in
+ * parallel for large epidemics; its random rolls come from a hash of the
+ * seed, step and cells involved, so the result does not depend on thread
+ * scheduling. Animals infected during the phase do not spread until the
+ * next step.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class Epidemic {
+
+    // Epidemics smaller than this are spread on the calling thread.
+    private static final int PARALLEL_THRESHOLD = 2000;
+
+    private Field field;
+    private List<Animal> infected;
+    private int[] generations;
+    private long[] newCases;
+    private int step;
+    // The seed of the run, read on the thread calling step(); the spread
+    // phase's worker threads would otherwise see a different one.
+    private long seed;
+
+    /**
+     * Creates an epidemic tracker for the given field.
+     * @param field The field the animals live in.
+     */
+    public Epidemic(Field field) {
+        this.field = field;
+        infected = new ArrayList<>();
+        generations = new int[16];
+        newCases = new long[(field.getDepth() * field.getWidth() + 63) / 64];
+        step = 0;
+    }
+
+    /**
+     * Infects an animal and starts tracking it.
+     * @param animal The animal that caught the disease.
+     */
+    public void infect(Animal animal) {
+        animal.catchDisease();
+        field.getActivity().record(ActivityMap.INFECTION, animal.getLocation());
+        if (infected.size() == generations.length) {
+            int[] larger = new int[generations.length * 2];
+            System.arraycopy(generations, 0, larger, 0, generations.length);
+            generations = larger;
+        }
+        generations[infected.size()] = animal.getGeneration();
+        infected.add(animal);
+    }
+
+    /**
+     * Runs the progress and spread phases for one step.
+     */
+    public void step() {
+        step++;
+        seed = Randomizer.getSeed();
+        dropStale();
+        progress();
+        spread();
+    }
+
+    /**
+     * @return The number of animals currently infected.
+     */
+    public int getInfectedCount() {
+        return infected.size();
+    }
+
+    /**
+     * Forgets every infection, for when the field is cleared.
+     */
+    public void clear() {
+        infected.clear();
+    }
+
+    /**
+     * Lets every infected animal try to infect its neighbours. Candidate
+     * cells are found in parallel, then applied one by one, using a bitmap
+     * of cells so an animal is infected once however many neighbours
+     * passed the disease on.
+     */
+    private void spread() {
+        IntStream sources = IntStream.range(0, infected.size());
+        if (infected.size() >= PARALLEL_THRESHOLD) {
+            sources = sources.parallel();
+        }
+        int[] targets = sources.flatMap(i -> IntStream.of(exposedCells(infected.get(i)))).toArray();
+
+        int width = field.getWidth();
+        for (int cell : targets) {
+            long bit = 1L << (cell & 63);
+            if ((newCases[cell >>> 6] & bit) == 0) {
+                newCases[cell >>> 6] |= bit;
+                Animal animal = field.getObjectAt(cell / width, cell % width);
+                if (animal != null && animal.isAlive() && !animal.isDiseased()) {
+                    infect(animal);
+                }
+            }
+        }
+        for (int cell : targets) {
+            newCases[cell >>> 6] = 0;
+        }
+    }
+
+    /**
+     * Finds the neighbours an infected animal passes the disease to this step.
+     * @param source The infected animal.
+     * @return The cell numbers (row * width + col) of the newly exposed neighbours.
+     */
+    private int[] exposedCells(Animal source) {
+        Location location = source.getLocation();
+        if (location == null) {
+            return new int[0];
+        }
+        int[] cells = new int[8];
+        int count = 0;
+        int width = field.getWidth();
+        int sourceCell = location.getRow() * width + location.getCol();
+        for (int row = location.getRow() - 1; row <= location.getRow() + 1; row++) {
+            for (int col = location.getCol() - 1; col <= location.getCol() + 1; col++) {
+                if (row >= 0 && row < field.getDepth() && col >= 0 && col < width) {
+                    Animal neighbour = field.getObjectAt(row, col);
+                    if (neighbour != null && neighbour != source && neighbour.getClass() == source.getClass()
+                            && neighbour.isAlive() && !neighbour.isDiseased()) {
+                        int cell = row * width + col;
+                        if (roll(sourceCell, cell) <= neighbour.getDiseaseProbability()) {
+                            cells[count++] = cell;
+                        }
+                    }
+                }
+            }
+        }
+        int[] exposed = new int[count];
+        System.arraycopy(cells, 0, exposed, 0, count);
+        return exposed;
+    }
+
+    /**
+     * Makes every infected animal one step sicker, killing those that
+     * have been ill for their species' disease duration.
+     */
+    private void progress() {
+        int kept = 0;
+        for (int i = 0; i < infected.size(); i++) {
+            Animal animal = infected.get(i);
+            if (!animal.isAlive()) {
+                continue;
+            }
+            if (animal.progressDisease() >= animal.getDiseaseDuration()) {
+                StepMetrics.countDeath(StepMetrics.ILLNESS);
+                animal.setDead();
+            }
+            else {
+                infected.set(kept, animal);
+                generations[kept] = generations[i];
+                kept++;
+            }
+        }
+        infected.subList(kept, infected.size()).clear();
+    }
+
+    /**
+     * Stops tracking animals that have died since the last step, including
+     * any whose object has since been recycled for a newborn.
+     */
+    private void dropStale() {
+        int kept = 0;
+        for (int i = 0; i < infected.size(); i++) {
+            Animal animal = infected.get(i);
+            if (animal.isAlive() && animal.getGeneration() == generations[i]) {
+                infected.set(kept, animal);
+                generations[kept] = generations[i];
+                kept++;
+            }
+        }
+        infected.subList(kept, infected.size()).clear();
+    }
+
+    /**
+     * A random number in [0, 1) determined by the seed, the step and the
+     * two cells, so it is the same whichever thread draws it.
+     */
+    private double roll(int sourceCell, int targetCell) {
+        long x = mix(mix(mix(seed + step) + sourceCell) + targetCell);
+        return (x >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finaliser).
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
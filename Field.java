@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -11,9 +12,24 @@ import java.util.Random;
  */
 public class Field {
     private static final Random rand = Randomizer.getRandom();
+    // Offsets of the eight neighbours of a cell, going round it in order.
+    private static final int[] NEIGHBOUR_ROWS = {-1, -1, -1, 0, 1, 1, 1, 0};
+    private static final int[] NEIGHBOUR_COLS = {-1, 0, 1, 1, 1, 0, -1, -1};
     private int depth, width;
     private Animal[][] field;
     private int plantCount = 0; 
+    // Animals and plants that have died since the count was last taken.
+    private int deaths;
+    private AgentPool pool = new AgentPool();
+    private GenomePool genomes = new GenomePool();
+    private LineageStore lineage = new LineageStore();
+    private Epidemic epidemic;
+    private SpatialIndex index;
+    private RegionTree regionTree;
+    private MipPyramid pyramid;
+    // One log for each copy of the field kept up to date from it.
+    private ChangeLog[] changes = new ChangeLog[0];
+    private ActivityMap activity;
 
     /**
      * Represent a field of the given dimensions.
@@ -24,6 +40,9 @@ public class Field {
         this.depth = depth;
         this.width = width;
         field = new Animal[depth][width];
+        epidemic = new Epidemic(this);
+        index = new SpatialIndex(this);
+        activity = new ActivityMap(this);
     }
 
     /**
@@ -31,6 +50,21 @@ public class Field {
      */
     public void clear() {
         plantCount = 0; 
+        deaths = 0;
+        epidemic.clear();
+        genomes.clear();
+        lineage.clear();
+        index.clear();
+        activity.clear();
+        if (regionTree != null) {
+            regionTree.clear();
+        }
+        if (pyramid != null) {
+            pyramid.clear();
+        }
+        for (ChangeLog log : changes) {
+            log.markAll();
+        }
         for (int row = 0; row < depth; row++) {
             for (int col = 0; col < width; col++) {
                 field[row][col] = null;
@@ -55,17 +89,68 @@ public class Field {
      * @param location The location to clear.
      */
     public void clear(Location location) {
-        field[location.getRow()][location.getCol()] = null;
+        int row = location.getRow();
+        int col = location.getCol();
+        Animal previous = field[row][col];
+        if (previous != null && previous.isAlive()) {
+            removeFromIndexes(previous, row, col);
+        }
+        field[row][col] = null;
+        for (ChangeLog log : changes) {
+            log.mark(row, col);
+        }
     }
 
     /**
      * Place an animal at the given location.
-     * If there is already an animal at the location it will be lost.
+     * If there is already an animal at the location it will be lost;
+     * a plant there is trampled (no longer alive).
      * @param animal The animal to be placed.
      * @param location Where to place the animal.
      */
     public void place(Animal animal, Location location) {
-        field[location.getRow()][location.getCol()] = animal;
+        int row = location.getRow();
+        int col = location.getCol();
+        Animal previous = field[row][col];
+        if (previous != null && previous.isAlive()) {
+            // Anything moving or seeding onto a plant tramples it; its
+            // death takes it out of the indexes.
+            if (previous != animal && previous instanceof Plant) {
+                previous.setStatus(false);
+            }
+            else {
+                removeFromIndexes(previous, row, col);
+            }
+        }
+        field[row][col] = animal;
+        if (animal.isAlive()) {
+            int species = Species.indexOf(animal);
+            index.add(species, row, col);
+            if (regionTree != null) {
+                regionTree.add(species, row, col, 1);
+            }
+            if (pyramid != null) {
+                pyramid.add(species, row, col, 1);
+            }
+        }
+        for (ChangeLog log : changes) {
+            log.mark(row, col);
+        }
+    }
+
+    /**
+     * Takes a living animal leaving a cell out of the spatial index, region
+     * tree and pyramid.
+     */
+    private void removeFromIndexes(Animal animal, int row, int col) {
+        int species = Species.indexOf(animal);
+        index.remove(species, row, col);
+        if (regionTree != null) {
+            regionTree.add(species, row, col, -1);
+        }
+        if (pyramid != null) {
+            pyramid.add(species, row, col, -1);
+        }
     }
 
     /**
@@ -118,6 +203,7 @@ public class Field {
     public List<Location> adjacentLocations(Location location) {
         assert location != null : "Null location passed to adjacentLocations";
         
+        StepMetrics.countNeighbourQuery();
         List<Location> locations = new LinkedList<>();
         if (location != null) {
             int row = location.getRow();
@@ -166,6 +252,204 @@ public class Field {
       return neighbours;
     }
 
+    /**
+     * Looks over an animal's neighbourhood once, both picking a mate and
+     * collecting the cells its young could be placed in (empty cells or
+     * cells holding a plant). The neighbours are visited from a random
+     * starting point, so neither the mate nor the order of the free cells
+     * favours any direction.
+     * @param animal The animal looking to breed.
+     * @param free A list to receive the free adjacent locations.
+     * @return A mate for the animal, or null if there is none.
+     */
+    public Animal findMate(Animal animal, List<Location> free) {
+        StepMetrics.countNeighbourQuery();
+        Location location = animal.getLocation();
+        int row = location.getRow();
+        int col = location.getCol();
+        int start = rand.nextInt(NEIGHBOUR_ROWS.length);
+        Animal mate = null;
+
+        for (int i = 0; i < NEIGHBOUR_ROWS.length; i++) {
+            int n = (start + i) % NEIGHBOUR_ROWS.length;
+            int nextRow = row + NEIGHBOUR_ROWS[n];
+            int nextCol = col + NEIGHBOUR_COLS[n];
+            if (nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                Animal neighbour = field[nextRow][nextCol];
+                if (neighbour == null || neighbour instanceof Plant) {
+                    free.add(new Location(nextRow, nextCol));
+                }
+                else if (mate == null && animal.canMateWith(neighbour)) {
+                    mate = neighbour;
+                }
+            }
+        }
+        return mate;
+    }
+
+    /**
+     * Computes a hash of everything placed in the field: which species
+     * sits in each cell, whether it is alive, and its gene. Two runs that
+     * hash the same at a step are, for replay purposes, in the same state.
+     * @return A hash of the field's current contents.
+     */
+    public long stateHash() {
+        long hash = 0xcbf29ce484222325L;
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                Animal animal = field[row][col];
+                long cell = 0;
+                if (animal != null) {
+                    cell = animal.getClass().getName().hashCode();
+                    cell = cell * 31 + (animal.isAlive() ? 1 : 0);
+                    cell = cell * 31 + (animal.getGene() == null ? 0 : animal.getGene().hashCode());
+                }
+                hash = (hash ^ cell) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return The pool that recycles dead animals in this field.
+     */
+    public AgentPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return The genes carried by the living animals in this field.
+     */
+    public GenomePool getGenomes() {
+        return genomes;
+    }
+
+    /**
+     * @return The family tree of the living animals in this field.
+     */
+    public LineageStore getLineage() {
+        return lineage;
+    }
+
+    /**
+     * @return The epidemic tracking disease among the animals in this field.
+     */
+    public Epidemic getEpidemic() {
+        return epidemic;
+    }
+
+    /**
+     * @return The index of where each species is in this field.
+     */
+    public SpatialIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The record of where recent deaths, births, kills and infections happened.
+     */
+    public ActivityMap getActivity() {
+        return activity;
+    }
+
+    /**
+     * Counts an animal or plant in this field dying, however it died, and
+     * takes it out of the spatial index, region tree and pyramid, which
+     * count living animals only. Called while the animal is still alive.
+     * @param animal The animal that is dying.
+     */
+    public void countDeath(Animal animal) {
+        deaths++;
+        Location location = animal.getLocation();
+        if (location != null && field[location.getRow()][location.getCol()] == animal) {
+            removeFromIndexes(animal, location.getRow(), location.getCol());
+        }
+    }
+
+    /**
+     * @return The number of animals and plants that have died since the
+     *         last call; counting then starts again from zero.
+     */
+    public int takeDeaths() {
+        int count = deaths;
+        deaths = 0;
+        return count;
+    }
+
+    /**
+     * Starts keeping a RegionTree of this field up to date, so that
+     * rectangle population counts need no rebuilding each step.
+     */
+    public void trackRegions() {
+        if (regionTree == null) {
+            regionTree = new RegionTree(this);
+        }
+    }
+
+    /**
+     * @return The region tree of this field, or null if regions are not tracked.
+     */
+    public RegionTree getRegionTree() {
+        return regionTree;
+    }
+
+    /**
+     * Starts keeping a MipPyramid of this field up to date, for drawing
+     * zoomed-out views.
+     */
+    public void trackPyramid() {
+        if (pyramid == null) {
+            pyramid = new MipPyramid(this);
+        }
+    }
+
+    /**
+     * @return The pyramid of this field, or null if it is not tracked.
+     */
+    public MipPyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * Starts keeping a new ChangeLog of the cells placed into and cleared,
+     * so that a copy of the field can be updated cell by cell. Each copy
+     * needs its own log, as each resets it at its own pace.
+     * @return The log, with every cell counted as changed.
+     */
+    public ChangeLog trackChanges() {
+        ChangeLog log = new ChangeLog(this);
+        changes = Arrays.copyOf(changes, changes.length + 1);
+        changes[changes.length - 1] = log;
+        return log;
+    }
+
+    /**
+     * Finds the free adjacent location (empty, or holding a plant) that
+     * takes one step closest to a target.
+     * @param location Where to step from.
+     * @param target Where to head for.
+     * @return The best free adjacent location, or null if none gets closer.
+     */
+    public Location stepToward(Location location, Location target) {
+        StepMetrics.countNeighbourQuery();
+        Location best = null;
+        int bestDistance = Math.max(Math.abs(target.getRow() - location.getRow()),
+                                    Math.abs(target.getCol() - location.getCol()));
+        for (int n = 0; n < NEIGHBOUR_ROWS.length; n++) {
+            int nextRow = location.getRow() + NEIGHBOUR_ROWS[n];
+            int nextCol = location.getCol() + NEIGHBOUR_COLS[n];
+            if (nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width
+                    && (field[nextRow][nextCol] == null || field[nextRow][nextCol] instanceof Plant)) {
+                int distance = Math.max(Math.abs(target.getRow() - nextRow), Math.abs(target.getCol() - nextCol));
+                if (distance < bestDistance) {
+                    best = new Location(nextRow, nextCol);
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
     /**
      * Return the depth of the field.
      * @return The depth of the field.
@@ -1,19 +1,31 @@
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color; 
+import javafx.scene.paint.Color;
 
 /**
- * Provides a graphical view of the field. This is a custom node for the user interface. 
+ * Provides a graphical view of the field. This is a custom node for the user interface.
+ *
+ * The view can be zoomed and panned. Close in, each visible cell is drawn;
+ * zoomed out so far that a pixel covers many cells, blocks are coloured by
+ * the most common species in them, read from a MipPyramid. Everything is
+ * drawn from a FieldSnapshot, so the simulation can go on meanwhile.
  *
  * @author Aditya Ranjan and Abdrakhman Salmenov
  */
 public class FieldCanvas extends Canvas {
 
-    private static final int GRID_VIEW_SCALING_FACTOR = 6;
+    private static final double MAX_CELL_SIZE = 64;
+    private static final Color EMPTY_COLOR = Color.WHITE;
+    private static final Color HEAT_COLOR = Color.RED;
+    // Decayed event count at which a cell of a heatmap is drawn fully opaque.
+    private static final float HEAT_SATURATION = 3;
     private int width, height;
-    private int xScale, yScale;
+    private int gridHeight, gridWidth;
+    // Size of a cell in pixels, and the cell (possibly fractional) at the top left corner.
+    private double cellSize, minCellSize;
+    private double viewRow, viewCol;
     GraphicsContext gc;
-    
+
     /**
     * Creates a new FieldView component.
     */
@@ -23,26 +35,182 @@ public class FieldCanvas extends Canvas {
         this.height = height;
         this.width = width;
     }
-    
+
     /**
-     * The scale determines the actual size of the rectangles that are drawn
+     * The scale determines the actual size of the rectangles that are drawn.
+     * The whole grid is fitted into the canvas, however large it is, and
+     * this is also as far as the view can be zoomed out.
      */
     public void setScale(int gridHeight, int gridWidth) {
-        xScale = width / gridWidth;
-        yScale = height / gridHeight;
-    
-        if (xScale < 1)
-            xScale = GRID_VIEW_SCALING_FACTOR;
-    
-        if (yScale < 1)
-            yScale = GRID_VIEW_SCALING_FACTOR;
+        this.gridHeight = gridHeight;
+        this.gridWidth = gridWidth;
+        cellSize = Math.min((double) width / gridWidth, (double) height / gridHeight);
+        minCellSize = cellSize;
+        viewRow = 0;
+        viewCol = 0;
+    }
+
+    /**
+     * Zooms the view in or out, keeping the cell under the given point still.
+     * @param factor How much to multiply the cell size by.
+     * @param x The x coordinate to zoom around.
+     * @param y The y coordinate to zoom around.
+     */
+    public void zoom(double factor, double x, double y) {
+        double row = viewRow + y / cellSize;
+        double col = viewCol + x / cellSize;
+        cellSize = Math.max(minCellSize, Math.min(cellSize * factor, MAX_CELL_SIZE));
+        viewRow = row - y / cellSize;
+        viewCol = col - x / cellSize;
+        clampView();
     }
-  
+
+    /**
+     * Moves the view by the given number of pixels.
+     */
+    public void pan(double dx, double dy) {
+        viewRow -= dy / cellSize;
+        viewCol -= dx / cellSize;
+        clampView();
+    }
+
+    /**
+     * Keeps the view over the grid.
+     */
+    private void clampView() {
+        viewRow = Math.max(0, Math.min(viewRow, gridHeight - height / cellSize));
+        viewCol = Math.max(0, Math.min(viewCol, gridWidth - width / cellSize));
+    }
+
+    /**
+     * Draws the visible part of the field.
+     * @param snapshot A copy of the field to draw.
+     */
+    public void render(FieldSnapshot snapshot) {
+        gc.setFill(EMPTY_COLOR);
+        gc.fillRect(0, 0, width, height);
+
+        int firstRow = (int) viewRow;
+        int firstCol = (int) viewCol;
+        int lastRow = Math.min((int) (viewRow + height / cellSize), gridHeight - 1);
+        int lastCol = Math.min((int) (viewCol + width / cellSize), gridWidth - 1);
+
+        if (cellSize >= 1) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    int species = snapshot.getSpecies(row, col);
+                    if (species >= 0) {
+                        drawMark(col, row, Species.getColor(species));
+                    }
+                }
+            }
+            return;
+        }
+
+        // Several cells to a pixel: draw one block of 2^level cells per pixel or so.
+        int level = 31 - Integer.numberOfLeadingZeros((int) (1 / cellSize));
+        MipPyramid pyramid = snapshot.getPyramid();
+        if (pyramid != null && level >= MipPyramid.BASE_LEVEL) {
+            level = Math.min(level, pyramid.getTopLevel());
+            for (int br = firstRow >> level; br <= lastRow >> level; br++) {
+                for (int bc = firstCol >> level; bc <= lastCol >> level; bc++) {
+                    int species = pyramid.dominantSpecies(level, br, bc);
+                    if (species >= 0) {
+                        fillCells(br << level, bc << level, 1 << level, Species.getColor(species));
+                    }
+                }
+            }
+        }
+        else {
+            // Too fine for the pyramid: sample one cell per block.
+            int stride = 1 << level;
+            for (int row = firstRow - firstRow % stride; row <= lastRow; row += stride) {
+                for (int col = firstCol - firstCol % stride; col <= lastCol; col += stride) {
+                    int species = snapshot.getSpecies(row, col);
+                    if (species >= 0) {
+                        fillCells(row, col, stride, Species.getColor(species));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the kind of recent activity copied into a snapshot as a
+     * heatmap over the visible part of the field, more opaque where there
+     * has been more of it. Zoomed out, one cell is sampled per pixel or so.
+     * @param snapshot A copy of the field holding activity of one kind.
+     */
+    public void renderActivity(FieldSnapshot snapshot) {
+        int firstRow = (int) viewRow;
+        int firstCol = (int) viewCol;
+        int lastRow = Math.min((int) (viewRow + height / cellSize), gridHeight - 1);
+        int lastCol = Math.min((int) (viewCol + width / cellSize), gridWidth - 1);
+        int stride = cellSize >= 1 ? 1 : Integer.highestOneBit((int) (1 / cellSize));
+
+        gc.setFill(HEAT_COLOR);
+        for (int row = firstRow - firstRow % stride; row <= lastRow; row += stride) {
+            for (int col = firstCol - firstCol % stride; col <= lastCol; col += stride) {
+                float heat = snapshot.getHeat(row, col);
+                if (heat > 0.01f) {
+                    gc.setGlobalAlpha(Math.min(heat / HEAT_SATURATION, 1));
+                    gc.fillRect(toX(col), toY(row), stride * cellSize, stride * cellSize);
+                }
+            }
+        }
+        gc.setGlobalAlpha(1);
+    }
+
     /**
     * Paints a rectangle of the given color on the canvas
     */
     public void drawMark(int x, int y, Color color) {
+        double gap = cellSize >= 3 ? 1 : 0;
         gc.setFill(color);
-        gc.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+        gc.fillRect(toX(x), toY(y), cellSize - gap, cellSize - gap);
+    }
+
+    /**
+    * Paints a square block of cells in one color.
+    */
+    private void fillCells(int row, int col, int cells, Color color) {
+        gc.setFill(color);
+        gc.fillRect(toX(col), toY(row), cells * cellSize, cells * cellSize);
+    }
+
+    /**
+    * Outlines a rectangle of cells, such as the user's selection.
+    */
+    public void drawSelection(int top, int left, int bottom, int right) {
+        gc.setStroke(Color.BLACK);
+        gc.strokeRect(toX(left), toY(top), (right - left + 1) * cellSize, (bottom - top + 1) * cellSize);
+    }
+
+    /**
+    * @return The column of the cell under the given x coordinate.
+    */
+    public int toCol(double x) {
+        return (int) Math.floor(viewCol + x / cellSize);
+    }
+
+    /**
+    * @return The row of the cell under the given y coordinate.
+    */
+    public int toRow(double y) {
+        return (int) Math.floor(viewRow + y / cellSize);
+    }
+
+    /**
+    * @return The x coordinate of the left edge of a column.
+    */
+    private double toX(int col) {
+        return (col - viewCol) * cellSize;
+    }
+
+    /**
+    * @return The y coordinate of the top edge of a row.
+    */
+    private double toY(int row) {
+        return (row - viewRow) * cellSize;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+/**
+ * A copy of what the view draws of a field at one step: the species in
+ * each cell, the population of each species, a MipPyramid for drawing
+ * zoomed out and, when asked for, one kind of recent activity.
+ *
+ * The view updates the copy while holding the simulator's lock and draws
+ * from it afterwards, so the simulation is never held up by drawing.
+ * Updating looks only at the cells its own ChangeLog of the field lists
+ * as changed since the last update, and keeps the pyramid in step with
+ * them, so it takes time in proportion to what changed, not to the size
+ * of the field. Copying activity is the exception: it is one pass over
+ * the cells, and is done only while an overlay is shown.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class FieldSnapshot {
+
+    private Field field;
+    private ChangeLog changes;
+    private int step, depth, width;
+    // Species number plus one in each cell, or zero if it is empty.
+    private byte[] cells;
+    private int[] counts = new int[Species.COUNT];
+    private MipPyramid pyramid;
+    private float[] heat;
+    private int activityKind = -1;
+
+    /**
+     * Brings the copy up to date with a field. Must be called holding the
+     * simulator's lock, so that the field is not half way through a step.
+     * @param step The step the field is at.
+     * @param field The field to copy.
+     * @param activityKind The kind of activity to copy (see ActivityMap),
+     *                     or -1 for none.
+     */
+    public void update(int step, Field field, int activityKind) {
+        this.step = step;
+        if (field != this.field) {
+            // Starts with every cell counted as changed.
+            this.field = field;
+            changes = field.trackChanges();
+            depth = field.getDepth();
+            width = field.getWidth();
+            cells = new byte[depth * width];
+        }
+        if (changes.isAll()) {
+            for (int row = 0; row < depth; row++) {
+                for (int col = 0; col < width; col++) {
+                    cells[row * width + col] = cellValue(field.getObjectAt(row, col));
+                }
+            }
+            pyramid = new MipPyramid(field);
+        }
+        else {
+            for (int i = 0; i < changes.size(); i++) {
+                int cell = changes.get(i);
+                int row = cell / width;
+                int col = cell % width;
+                byte before = cells[cell];
+                byte after = cellValue(field.getObjectAt(row, col));
+                if (after != before) {
+                    if (before > 0) {
+                        pyramid.add(before - 1, row, col, -1);
+                    }
+                    if (after > 0) {
+                        pyramid.add(after - 1, row, col, 1);
+                    }
+                    cells[cell] = after;
+                }
+            }
+        }
+        changes.reset();
+
+        SpatialIndex index = field.getIndex();
+        for (int species = 0; species < Species.COUNT; species++) {
+            counts[species] = index.getTotal(species);
+        }
+
+        this.activityKind = activityKind;
+        if (activityKind >= 0) {
+            if (heat == null || heat.length != cells.length) {
+                heat = new float[cells.length];
+            }
+            field.getActivity().copy(activityKind, heat);
+        }
+    }
+
+    /**
+     * @return What the copy holds for a cell with the given occupant.
+     */
+    private static byte cellValue(Animal animal) {
+        return (byte) (animal != null && animal.isAlive() ? Species.indexOf(animal) + 1 : 0);
+    }
+
+    /**
+     * @return The step the copy was taken at.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return The depth of the field copied.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field copied.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The species number of the living animal in the cell, or -1
+     *         if there is none.
+     */
+    public int getSpecies(int row, int col) {
+        return cells[row * width + col] - 1;
+    }
+
+    /**
+     * @return The population of each species, by species number. Not to be changed.
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return Per-species counts of blocks of cells, for drawing zoomed out.
+     */
+    public MipPyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * @return The kind of activity copied, or -1 if none was.
+     */
+    public int getActivityKind() {
+        return activityKind;
+    }
+
+    /**
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The decayed number of events of the copied kind at the cell.
+     */
+    public float getHeat(int row, int col) {
+        return heat[row * width + col];
+    }
+}
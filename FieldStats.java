@@ -1,4 +1,5 @@
 import java.util.HashMap;
+import java.util.function.IntBinaryOperator;
 
 /**
  * This class collects and provides some statistical data on the state
@@ -11,6 +12,9 @@ public class FieldStats {
     
     private HashMap<Class, Counter> counters;
     private boolean countsValid;
+    private int[][] regionTable;
+    private int tableWidth;
+    private RegionTree regionTree;
 
     /**
      * Constructs a FieldStats object.  Set up a collection for counters for
@@ -57,6 +61,13 @@ public class FieldStats {
      * @param animalClass The class of animal to increment.
      */
     public void incrementCount(Class animalClass) {
+        getCounter(animalClass).increment();
+    }
+
+    /**
+     * @return The counter for one class of animal, made if there is none yet.
+     */
+    private Counter getCounter(Class<?> animalClass) {
         Counter count = counters.get(animalClass);
 
         if (count == null) {
@@ -64,7 +75,7 @@ public class FieldStats {
             count = new Counter(animalClass.getName());
             counters.put(animalClass, count);
         }
-        count.increment();
+        return count;
     }
 
     /**
@@ -95,19 +106,116 @@ public class FieldStats {
     }
 
     /**
-     * Generates counts of the number of animals.
+     * Builds a summed-area table of each species over the field, so that
+     * countInRegion can then count any rectangle in constant time. Call
+     * once per step, after the step. If the field keeps a RegionTree up to
+     * date itself (see Field.trackRegions), that is used and nothing is built.
+     * @param field The field to build the tables for.
+     */
+    public void buildRegionTable(Field field) {
+        regionTree = field.getRegionTree();
+        if (regionTree != null) {
+            return;
+        }
+        fillRegionTable(field.getDepth(), field.getWidth(), (row, col) -> {
+            Animal animal = field.getObjectAt(row, col);
+            return animal != null && animal.isAlive() ? Species.indexOf(animal) : -1;
+        });
+    }
+
+    /**
+     * Builds the summed-area tables from a copy of the field, as
+     * buildRegionTable(Field) does from the field itself.
+     * @param snapshot The copy of the field to build the tables for.
+     */
+    public void buildRegionTable(FieldSnapshot snapshot) {
+        regionTree = null;
+        fillRegionTable(snapshot.getDepth(), snapshot.getWidth(), snapshot::getSpecies);
+    }
+
+    /**
+     * Fills the summed-area tables, one cell at a time.
+     * @param occupant Gives the species number of the living animal in a
+     *                 cell, or -1 if there is none.
+     */
+    private void fillRegionTable(int depth, int width, IntBinaryOperator occupant) {
+        tableWidth = width + 1;
+        if (regionTable == null || regionTable[0].length != (depth + 1) * tableWidth) {
+            regionTable = new int[Species.COUNT][(depth + 1) * tableWidth];
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                int here = (row + 1) * tableWidth + col + 1;
+                int occupied = occupant.applyAsInt(row, col);
+                for (int species = 0; species < Species.COUNT; species++) {
+                    int[] table = regionTable[species];
+                    table[here] = (occupied == species ? 1 : 0) + table[here - tableWidth]
+                                  + table[here - 1] - table[here - tableWidth - 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the animals of a species inside a rectangle of the field, as
+     * of the last call to buildRegionTable.
+     * @param species The species number (see Species).
+     * @param top The first row of the rectangle.
+     * @param left The first column of the rectangle.
+     * @param bottom The last row of the rectangle.
+     * @param right The last column of the rectangle.
+     * @return The number of animals of that species in the rectangle.
+     */
+    public int countInRegion(int species, int top, int left, int bottom, int right) {
+        if (regionTree != null) {
+            return regionTree.count(species, top, left, bottom, right);
+        }
+        int[] table = regionTable[species];
+        return table[(bottom + 1) * tableWidth + right + 1] - table[top * tableWidth + right + 1]
+               - table[(bottom + 1) * tableWidth + left] + table[top * tableWidth + left];
+    }
+
+    /**
+     * Describes the population of a rectangle of the field, as of the last
+     * call to buildRegionTable.
+     * @return A string giving the count of each species in the rectangle.
+     */
+    public String getRegionDetails(int top, int left, int bottom, int right) {
+        StringBuffer buffer = new StringBuffer();
+        for (int species = 0; species < Species.COUNT; species++) {
+            buffer.append(Species.getName(species));
+            buffer.append(": ");
+            buffer.append(countInRegion(species, top, left, bottom, right));
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Generates counts of the number of animals, from the totals the
+     * field's spatial index keeps rather than by looking at every cell.
      * These are not kept up to date.
      * @param field The field to generate the stats for.
      */
-    private void generateCounts(Field field) {
-        reset();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Animal animal = field.getObjectAt(row, col);
+    public void generateCounts(Field field) {
+        SpatialIndex index = field.getIndex();
+        int[] totals = new int[Species.COUNT];
+        for (int species = 0; species < Species.COUNT; species++) {
+            totals[species] = index.getTotal(species);
+        }
+        generateCounts(totals);
+    }
 
-                if (animal != null) {
-                    incrementCount(animal.getClass());
-                }
+    /**
+     * Generates counts of the number of animals from the population of
+     * each species, such as a FieldSnapshot holds.
+     * @param speciesCounts The population of each species, by species number.
+     */
+    public void generateCounts(int[] speciesCounts) {
+        reset();
+        for (int species = 0; species < Species.COUNT; species++) {
+            if (speciesCounts[species] > 0) {
+                getCounter(Species.getType(species)).add(speciesCounts[species]);
             }
         }
         countsValid = true;
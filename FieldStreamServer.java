@@ -0,0 +1,624 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javafx.scene.paint.Color;
+
+/**
+ * A small web server that lets people watch a running simulation in a
+ * browser. Opening http://host:port/ gives a viewer page, which connects
+ * back over a WebSocket and is sent the field as it changes.
+ *
+ * Each viewer is first sent a keyframe (the whole field, run-length
+ * encoded) and then only the cells that changed since the last frame it
+ * was sent. A viewer asks for a frame rate (/stream?fps=N); frames that
+ * arrive while it is still being sent the last one are skipped, so a
+ * slow viewer just sees fewer frames (each a delta from the one it saw
+ * last) and never holds anyone else up.
+ *
+ * The simulation thread only copies the field, at most MAX_FPS times a
+ * second and only while someone is watching. It copies the frame before
+ * and updates the cells listed by its own ChangeLog of the field, into a
+ * buffer left over from a frame nobody holds any more. Each frame is
+ * encoded at most once as a keyframe, and its delta from a given earlier
+ * frame once, however many are watching; sending is done by one thread
+ * per viewer.
+ * Another thread per viewer reads what the browser sends and ignores it,
+ * except that a close message, or the connection dropping, ends the
+ * viewer at once rather than at the next failed send.
+ *
+ * Only this machine can connect unless the program is started with
+ * -Dstream.host set to an address to listen on instead, such as 0.0.0.0
+ * for every interface. Anyone who can connect can watch, so only widen
+ * it on a trusted network.
+ *
+ * Run with: java FieldStreamServer [port] [steps]
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class FieldStreamServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final int MAX_FPS = 30;
+    private static final int DEFAULT_FPS = 10;
+    private static final int STEP_DELAY = 50;
+    private static final int DEFAULT_DEPTH = 80;
+    private static final int DEFAULT_WIDTH = 100;
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final byte KEYFRAME = 0;
+    private static final byte DELTA = 1;
+    // The WebSocket opcode of a close message.
+    private static final int CLOSE = 8;
+    // Buffers kept for reuse once their frames are let go.
+    private static final int SPARE_BUFFERS = 4;
+
+    private ServerSocket server;
+    private List<Viewer> viewers = new CopyOnWriteArrayList<>();
+    private Object frameLock = new Object();
+    private volatile Frame latest;
+    private ArrayDeque<byte[]> spare = new ArrayDeque<>();
+    private long frameCount;
+    private long lastSnapshot;
+    // The cells changed since the last frame, and the field they are in.
+    private ChangeLog changes;
+    private Field changesField;
+    // Set by close(); viewers waiting for a frame wake and stop.
+    private boolean closed;
+
+    /**
+     * A copy of the field at one step: species number plus one in each
+     * cell, or zero if it is empty. Never changed while anyone holds it:
+     * the latest frame, and each viewer's last frame sent, count as users,
+     * and the cells are reused only once there are none. Its keyframe and
+     * its delta from the frame viewers most often last saw are encoded
+     * once, by whichever viewer needs them first, and shared by the others.
+     */
+    private static class Frame {
+        private final long number;
+        private final int step, depth, width;
+        private final byte[] cells;
+        private int users = 1;
+        private byte[] keyframe, delta;
+        // The number of the frame the delta is from.
+        private long deltaBase = -1;
+
+        private Frame(long number, int step, int depth, int width, byte[] cells) {
+            this.number = number;
+            this.step = step;
+            this.depth = depth;
+            this.width = width;
+            this.cells = cells;
+        }
+
+        /**
+         * @return This frame encoded as a keyframe.
+         */
+        private synchronized byte[] keyframe() {
+            if (keyframe == null) {
+                keyframe = encodeKeyframe(this);
+            }
+            return keyframe;
+        }
+
+        /**
+         * @param sent The frame a viewer was sent last; the viewer must
+         *             still hold it.
+         * @return The changes from that frame to this one, or null if
+         *         there is none or it was a different size.
+         */
+        private synchronized byte[] deltaFrom(Frame sent) {
+            if (sent == null || sent.depth != depth || sent.width != width) {
+                return null;
+            }
+            if (sent.number != deltaBase) {
+                delta = encodeDelta(sent, this);
+                deltaBase = sent.number;
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * Starts listening for viewers on the given port, on the loopback
+     * address unless -Dstream.host says otherwise.
+     * @param port The port to listen on.
+     */
+    public FieldStreamServer(int port) throws IOException {
+        String host = System.getProperty("stream.host");
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(address, port));
+        Thread acceptor = new Thread(this::acceptViewers, "stream-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Called by the simulator after each step; copies the field if anyone
+     * is watching and it is time for another frame.
+     * @param step The step just completed.
+     * @param field The field after the step.
+     */
+    public void stepCompleted(int step, Field field) {
+        if (viewers.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastSnapshot < 1_000_000_000L / MAX_FPS) {
+            return;
+        }
+        lastSnapshot = now;
+
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        if (changes == null || changesField != field) {
+            // Starts with every cell counted as changed.
+            changes = field.trackChanges();
+            changesField = field;
+        }
+        Frame before;
+        byte[] cells;
+        synchronized (frameLock) {
+            before = latest;
+            cells = spare.poll();
+        }
+        if (cells == null || cells.length != depth * width) {
+            cells = new byte[depth * width];
+        }
+        if (before == null || changes.isAll() || before.cells.length != cells.length) {
+            for (int row = 0; row < depth; row++) {
+                for (int col = 0; col < width; col++) {
+                    cells[row * width + col] = cellValue(field.getObjectAt(row, col));
+                }
+            }
+        }
+        else {
+            System.arraycopy(before.cells, 0, cells, 0, cells.length);
+            for (int i = 0; i < changes.size(); i++) {
+                int cell = changes.get(i);
+                cells[cell] = cellValue(field.getObjectAt(cell / width, cell % width));
+            }
+        }
+        changes.reset();
+        synchronized (frameLock) {
+            latest = new Frame(frameCount++, step, depth, width, cells);
+            release(before);
+            frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return What a frame holds for a cell with the given occupant.
+     */
+    private static byte cellValue(Animal animal) {
+        return (byte) (animal != null && animal.isAlive() ? Species.indexOf(animal) + 1 : 0);
+    }
+
+    /**
+     * Lets go of a frame, keeping its cells for reuse if nobody holds it
+     * any more. Must be called holding frameLock.
+     * @param frame The frame, or null.
+     */
+    private void release(Frame frame) {
+        if (frame != null && --frame.users == 0 && spare.size() < SPARE_BUFFERS) {
+            spare.push(frame.cells);
+        }
+    }
+
+    /**
+     * @return The number of viewers connected.
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * Stops accepting viewers and disconnects everyone.
+     */
+    public void close() throws IOException {
+        synchronized (frameLock) {
+            closed = true;
+            frameLock.notifyAll();
+        }
+        server.close();
+        for (Viewer viewer : viewers) {
+            viewer.socket.close();
+        }
+    }
+
+    /**
+     * Accepts connections, giving each its own thread.
+     */
+    private void acceptViewers() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket), "stream-viewer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException e) {
+                // The server was closed.
+            }
+        }
+    }
+
+    /**
+     * Answers one HTTP request: the viewer page, or a WebSocket stream.
+     */
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            String request = in.readLine();
+            String key = null;
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                    key = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            String path = request == null ? "" : request.split(" ")[1];
+
+            if (path.startsWith("/stream") && key != null) {
+                out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                           + "Upgrade: websocket\r\n"
+                           + "Connection: Upgrade\r\n"
+                           + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                Viewer viewer = new Viewer(socket, out, requestedFps(path));
+                Thread reader = new Thread(() -> viewer.readUntilClosed(in), "stream-viewer-input");
+                reader.setDaemon(true);
+                reader.start();
+                viewers.add(viewer);
+                try {
+                    viewer.run();
+                }
+                finally {
+                    viewers.remove(viewer);
+                }
+            }
+            else if (path.equals("/")) {
+                byte[] page = viewerPage().getBytes(StandardCharsets.UTF_8);
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=utf-8\r\n"
+                           + "Content-Length: " + page.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(page);
+            }
+            else {
+                out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            }
+            out.flush();
+        }
+        catch (IOException | InterruptedException | RuntimeException e) {
+            // The viewer went away or sent nonsense; nothing to do but hang up.
+        }
+        finally {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    /**
+     * One connected viewer, sent frames at no more than the rate it asked for.
+     */
+    private class Viewer {
+        private Socket socket;
+        private OutputStream out;
+        private long interval;
+        // Set once the viewer has sent a close message or hung up.
+        private boolean gone;
+
+        private Viewer(Socket socket, OutputStream out, int fps) {
+            this.socket = socket;
+            this.out = out;
+            interval = 1_000_000_000L / fps;
+        }
+
+        /**
+         * Sends frames until the viewer disconnects.
+         */
+        private void run() throws IOException, InterruptedException {
+            Frame previous = null;
+            long lastSent = 0;
+            try {
+                while (!socket.isClosed()) {
+                    boolean stop;
+                    synchronized (frameLock) {
+                        while (!closed && !gone && (latest == null || latest == previous)) {
+                            frameLock.wait();
+                        }
+                        stop = closed || gone;
+                    }
+                    if (stop) {
+                        // Answers the viewer's close message, or says goodbye on shutdown.
+                        out.write(0x80 | CLOSE);
+                        out.write(0);
+                        out.flush();
+                        return;
+                    }
+                    long wait = lastSent + interval - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    }
+                    // Whatever is newest now; frames made while waiting are skipped.
+                    Frame frame;
+                    synchronized (frameLock) {
+                        frame = latest;
+                        frame.users++;
+                    }
+                    // The changes since the frame this viewer saw last.
+                    byte[] message = frame.deltaFrom(previous);
+                    sendBinary(out, message != null ? message : frame.keyframe());
+                    synchronized (frameLock) {
+                        release(previous);
+                    }
+                    previous = frame;
+                    lastSent = System.nanoTime();
+                }
+            }
+            finally {
+                synchronized (frameLock) {
+                    release(previous);
+                }
+            }
+        }
+
+        /**
+         * Reads the messages the browser sends, skipping their contents,
+         * until it sends a close message or the connection ends; then
+         * wakes the sending thread so it stops. The reader must be the one
+         * the handshake was read through, as it may hold bytes read ahead.
+         * @param in The connection's input, one character per byte.
+         */
+        private void readUntilClosed(Reader in) {
+            try {
+                while (true) {
+                    int first = in.read();
+                    int second = in.read();
+                    if (first < 0 || second < 0 || (first & 0x0f) == CLOSE) {
+                        break;
+                    }
+                    long length = second & 0x7f;
+                    int lengthBytes = length == 126 ? 2 : length == 127 ? 8 : 0;
+                    if (lengthBytes > 0) {
+                        length = 0;
+                        for (int i = 0; i < lengthBytes; i++) {
+                            int b = in.read();
+                            if (b < 0) {
+                                return;
+                            }
+                            length = length << 8 | b;
+                        }
+                    }
+                    // Browsers mask what they send with four extra bytes.
+                    if ((second & 0x80) != 0) {
+                        length += 4;
+                    }
+                    while (length > 0) {
+                        long skipped = in.skip(length);
+                        if (skipped <= 0) {
+                            if (in.read() < 0) {
+                                return;
+                            }
+                            skipped = 1;
+                        }
+                        length -= skipped;
+                    }
+                }
+            }
+            catch (IOException e) {
+                // The connection was closed.
+            }
+            finally {
+                synchronized (frameLock) {
+                    gone = true;
+                    frameLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes a whole frame: the type, step, depth and width, then runs of
+     * equal cells as (value, length) pairs.
+     */
+    private static byte[] encodeKeyframe(Frame frame) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(KEYFRAME);
+        writeInt(bytes, frame.step);
+        writeInt(bytes, frame.depth);
+        writeInt(bytes, frame.width);
+        byte[] cells = frame.cells;
+        int i = 0;
+        while (i < cells.length) {
+            int start = i;
+            while (i < cells.length && cells[i] == cells[start]) {
+                i++;
+            }
+            bytes.write(cells[start]);
+            writeVarint(bytes, i - start);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes the changes from one frame to the next: the type and step,
+     * then alternately the length of a run of unchanged cells and the
+     * length of a run of changed cells followed by their new values.
+     */
+    private static byte[] encodeDelta(Frame previous, Frame frame) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(DELTA);
+        writeInt(bytes, frame.step);
+        byte[] before = previous.cells;
+        byte[] after = frame.cells;
+        int i = 0;
+        while (i < after.length) {
+            int start = i;
+            while (i < after.length && after[i] == before[i]) {
+                i++;
+            }
+            if (i == after.length) {
+                break;
+            }
+            writeVarint(bytes, i - start);
+            start = i;
+            while (i < after.length && after[i] != before[i]) {
+                i++;
+            }
+            writeVarint(bytes, i - start);
+            bytes.write(after, start, i - start);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a WebSocket binary message (unmasked, as servers send them).
+     */
+    private static void sendBinary(OutputStream out, byte[] message) throws IOException {
+        out.write(0x82);
+        if (message.length < 126) {
+            out.write(message.length);
+        }
+        else if (message.length < 65536) {
+            out.write(126);
+            out.write(message.length >> 8);
+            out.write(message.length);
+        }
+        else {
+            out.write(127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) ((long) message.length >> shift));
+            }
+        }
+        out.write(message);
+        out.flush();
+    }
+
+    private static void writeInt(ByteArrayOutputStream bytes, int value) {
+        bytes.write(value >> 24);
+        bytes.write(value >> 16);
+        bytes.write(value >> 8);
+        bytes.write(value);
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, low bits first.
+     */
+    private static void writeVarint(ByteArrayOutputStream bytes, int value) {
+        while (value >= 0x80) {
+            bytes.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+    }
+
+    /**
+     * @return The answer to a WebSocket handshake key.
+     */
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is always available", e);
+        }
+    }
+
+    /**
+     * @return The frame rate asked for in a /stream?fps=N path, within 1 to MAX_FPS.
+     */
+    private static int requestedFps(String path) {
+        int at = path.indexOf("fps=");
+        if (at < 0) {
+            return DEFAULT_FPS;
+        }
+        try {
+            return Math.max(1, Math.min(Integer.parseInt(path.substring(at + 4).split("&")[0]), MAX_FPS));
+        }
+        catch (NumberFormatException e) {
+            return DEFAULT_FPS;
+        }
+    }
+
+    /**
+     * @return The viewer page, with the species colours filled in.
+     */
+    private static String viewerPage() {
+        StringBuilder colors = new StringBuilder("[[255,255,255]");
+        for (int species = 0; species < Species.COUNT; species++) {
+            Color color = Species.getColor(species);
+            colors.append(String.format(",[%d,%d,%d]", Math.round(color.getRed() * 255),
+                                        Math.round(color.getGreen() * 255), Math.round(color.getBlue() * 255)));
+        }
+        colors.append(']');
+        return "<!DOCTYPE html>\n"
+            + "<html><head><title>Predator/Prey Simulation</title>\n"
+            + "<style>body{font-family:sans-serif} canvas{image-rendering:pixelated;width:600px}</style>\n"
+            + "</head><body>\n"
+            + "<div id=\"gen\">Connecting...</div><canvas id=\"field\"></canvas>\n"
+            + "<script>\n"
+            + "const colors = " + colors + ";\n"
+            + "const canvas = document.getElementById('field'), ctx = canvas.getContext('2d');\n"
+            + "let cells = null, image = null;\n"
+            + "const fps = new URLSearchParams(location.search).get('fps') || " + DEFAULT_FPS + ";\n"
+            + "const ws = new WebSocket('ws://' + location.host + '/stream?fps=' + fps);\n"
+            + "ws.binaryType = 'arraybuffer';\n"
+            + "ws.onclose = () => document.getElementById('gen').textContent = 'Disconnected';\n"
+            + "ws.onmessage = e => {\n"
+            + "  const d = new DataView(e.data); let p = 0;\n"
+            + "  const varint = () => { let v = 0, s = 0, b; do { b = d.getUint8(p++); v |= (b & 127) << s; s += 7; } while (b & 128); return v; };\n"
+            + "  const type = d.getUint8(p++), step = d.getInt32(p); p += 4;\n"
+            + "  if (type === " + KEYFRAME + ") {\n"
+            + "    const depth = d.getInt32(p), width = d.getInt32(p + 4); p += 8;\n"
+            + "    canvas.width = width; canvas.height = depth;\n"
+            + "    cells = new Uint8Array(depth * width); image = ctx.createImageData(width, depth);\n"
+            + "    for (let i = 0; i < cells.length; ) { const v = d.getUint8(p++), n = varint(); cells.fill(v, i, i + n); i += n; }\n"
+            + "  } else {\n"
+            + "    for (let i = 0; p < d.byteLength; ) { i += varint(); const n = varint(); for (let k = 0; k < n; k++) cells[i++] = d.getUint8(p++); }\n"
+            + "  }\n"
+            + "  for (let i = 0; i < cells.length; i++) { const c = colors[cells[i]];\n"
+            + "    image.data[4 * i] = c[0]; image.data[4 * i + 1] = c[1]; image.data[4 * i + 2] = c[2]; image.data[4 * i + 3] = 255; }\n"
+            + "  ctx.putImageData(image, 0, 0);\n"
+            + "  document.getElementById('gen').textContent = 'Generation: ' + step;\n"
+            + "};\n"
+            + "</script></body></html>\n";
+    }
+
+    /**
+     * Runs a simulation without a window and streams it to anyone who connects.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+
+        Simulator simulator = new Simulator(DEFAULT_DEPTH, DEFAULT_WIDTH);
+        FieldStreamServer streamServer = new FieldStreamServer(port);
+        simulator.setStreamServer(streamServer);
+        System.out.println("Watch at http://localhost:" + port + "/");
+        for (int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+            simulator.delay(STEP_DELAY);
+        }
+        streamServer.close();
+    }
+}
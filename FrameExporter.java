@@ -0,0 +1,188 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Color;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes a picture of the field every so many steps, as numbered PNG (or
+ * raw RGB) files that can be joined into a video. No window is needed.
+ *
+ * The simulation thread only copies which species is in each cell into
+ * a spare buffer; a background thread turns it into an image and writes
+ * it. There is a fixed number of buffers, so if the writer falls behind
+ * the frame is skipped rather than making the simulation wait.
+ *
+ * Run with: java FrameExporter directory steps [interval] [rgb]
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class FrameExporter {
+
+    private static final int BUFFERS = 4;
+    private static final int CELL_PIXELS = 4;
+    private static final int EMPTY_RGB = 0xffffff;
+    private static final int DEFAULT_DEPTH = 80;
+    private static final int DEFAULT_WIDTH = 100;
+
+    private File directory;
+    private int interval;
+    private boolean raw;
+    private int[] speciesRgb;
+    private BlockingQueue<byte[]> spare;
+    private ExecutorService encoder;
+    // Buffers made so far, and frames skipped because none was spare.
+    private int allocated, skipped;
+
+    /**
+     * Creates an exporter writing into the given directory.
+     * @param directory Where to write the frames; created if missing.
+     * @param interval Write a frame every this many steps.
+     * @param raw Whether to write raw RGB bytes instead of PNG.
+     */
+    public FrameExporter(File directory, int interval, boolean raw) {
+        this.directory = directory;
+        this.interval = interval;
+        this.raw = raw;
+        directory.mkdirs();
+        speciesRgb = new int[Species.COUNT];
+        for (int species = 0; species < Species.COUNT; species++) {
+            speciesRgb[species] = toRgb(Species.getColor(species));
+        }
+        spare = new ArrayBlockingQueue<>(BUFFERS);
+        encoder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "frame-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called by the simulator after each step; takes a snapshot of the
+     * field when a frame is due.
+     * @param step The step just completed.
+     * @param field The field after the step.
+     */
+    public void stepCompleted(int step, Field field) {
+        if (step % interval != 0) {
+            return;
+        }
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        byte[] cells = spare.poll();
+        if (cells == null) {
+            if (allocated == BUFFERS) {
+                skipped++;
+                return;
+            }
+            cells = new byte[depth * width];
+            allocated++;
+        }
+
+        // Species number plus one in each cell, or zero if empty.
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                Animal animal = field.getObjectAt(row, col);
+                cells[row * width + col] = (byte) (animal != null && animal.isAlive() ? Species.indexOf(animal) + 1 : 0);
+            }
+        }
+        byte[] snapshot = cells;
+        encoder.execute(() -> encode(step, snapshot, depth, width));
+    }
+
+    /**
+     * Turns a snapshot into an image and writes it, then hands the buffer back.
+     */
+    private void encode(int step, byte[] cells, int depth, int width) {
+        String name = String.format("frame-%08d.%s", step, raw ? "rgb" : "png");
+        try {
+            if (raw) {
+                writeRaw(new File(directory, name), cells, depth, width);
+            }
+            else {
+                int imageWidth = width * CELL_PIXELS;
+                int[] pixels = new int[imageWidth * depth * CELL_PIXELS];
+                for (int y = 0; y < depth * CELL_PIXELS; y++) {
+                    for (int x = 0; x < imageWidth; x++) {
+                        pixels[y * imageWidth + x] = colorOf(cells[(y / CELL_PIXELS) * width + x / CELL_PIXELS]);
+                    }
+                }
+                BufferedImage image = new BufferedImage(imageWidth, depth * CELL_PIXELS, BufferedImage.TYPE_INT_RGB);
+                image.setRGB(0, 0, imageWidth, depth * CELL_PIXELS, pixels, 0, imageWidth);
+                ImageIO.write(image, "png", new File(directory, name));
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Could not write frame " + name + ": " + e.getMessage());
+        }
+        spare.offer(cells);
+    }
+
+    /**
+     * Writes a snapshot as three bytes (red, green, blue) per cell, row by row.
+     */
+    private void writeRaw(File file, byte[] cells, int depth, int width) throws IOException {
+        byte[] bytes = new byte[depth * width * 3];
+        for (int i = 0; i < cells.length; i++) {
+            int rgb = colorOf(cells[i]);
+            bytes[3 * i] = (byte) (rgb >> 16);
+            bytes[3 * i + 1] = (byte) (rgb >> 8);
+            bytes[3 * i + 2] = (byte) rgb;
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Waits for every queued frame to be written, then stops the writer.
+     * @return The number of frames skipped because the writer fell behind.
+     */
+    public int finish() throws InterruptedException {
+        encoder.shutdown();
+        encoder.awaitTermination(1, TimeUnit.HOURS);
+        return skipped;
+    }
+
+    /**
+     * @return The colour of a snapshot cell, as 0xRRGGBB.
+     */
+    private int colorOf(byte cell) {
+        return cell == 0 ? EMPTY_RGB : speciesRgb[cell - 1];
+    }
+
+    /**
+     * @return A colour as 0xRRGGBB.
+     */
+    private static int toRgb(Color color) {
+        return (int) Math.round(color.getRed() * 255) << 16
+               | (int) Math.round(color.getGreen() * 255) << 8
+               | (int) Math.round(color.getBlue() * 255);
+    }
+
+    /**
+     * Runs a simulation without a window, exporting frames as it goes.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        File directory = new File(args[0]);
+        int steps = Integer.parseInt(args[1]);
+        int interval = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        boolean raw = args.length > 3 && args[3].equals("rgb");
+
+        Simulator simulator = new Simulator(DEFAULT_DEPTH, DEFAULT_WIDTH);
+        FrameExporter exporter = new FrameExporter(directory, interval, raw);
+        simulator.setFrameExporter(exporter);
+        for (int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+        }
+        int skipped = exporter.finish();
+        System.out.println("Exported frames to " + directory + ", skipped " + skipped);
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps one copy of each distinct gene carried by the living animals in
+ * a field, and counts how many animals of each species carry each value
+ * (allele) of each part of the gene (locus).
+ *
+ * Animals hand their gene in when they are born and give it back when
+ * they die. Animals with the same gene then share one String, so the
+ * memory used for genes grows with the number of distinct genes rather
+ * than the number of animals. The allele counts and sums are kept up to
+ * date at the same time, so questions such as the mean breeding age of
+ * the living jaguars are answered without looking at any animal.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class GenomePool {
+
+    // The loci of a gene, in the order they appear in it.
+    public static final int BREEDING_AGE = 0;
+    public static final int LIFE_SPAN = 1;
+    public static final int BREEDING_PROBABILITY = 2;
+    public static final int LITTER_SIZE = 3;
+    public static final int DISEASE_PROBABILITY = 4;
+    public static final int METABOLISM = 5;
+    public static final int LOCI = 6;
+
+    private static final String[] LOCUS_NAMES = {"breeding age", "life span", "breeding probability",
+                                                 "litter size", "disease probability", "metabolism"};
+    // Where each locus starts in the gene string; the last entry is its length.
+    private static final int[] STARTS = {0, 2, 5, 7, 9, 11, 14};
+    // No locus is more than three digits long.
+    private static final int ALLELES = 1000;
+
+    /**
+     * One distinct gene, with its loci already read.
+     */
+    private static class Entry {
+        final String gene;
+        final int[] alleles;
+        int carriers;
+
+        Entry(String gene) {
+            this.gene = gene;
+            alleles = new int[LOCI];
+            for (int locus = 0; locus < LOCI; locus++) {
+                int value = 0;
+                for (int i = STARTS[locus]; i < STARTS[locus + 1]; i++) {
+                    value = value * 10 + gene.charAt(i) - '0';
+                }
+                alleles[locus] = value;
+            }
+        }
+    }
+
+    private Map<String, Entry> genes = new HashMap<>();
+    private int[][][] counts = new int[Species.COUNT][LOCI][ALLELES];
+    private long[][] sums = new long[Species.COUNT][LOCI];
+    private int[] carriers = new int[Species.COUNT];
+
+    /**
+     * Records that an animal now carries a gene.
+     * @param species The animal's species (see Species).
+     * @param gene The gene.
+     * @return The shared copy of the gene, for the animal to keep.
+     */
+    public String intern(int species, String gene) {
+        Entry entry = genes.get(gene);
+        if (entry == null) {
+            entry = new Entry(gene);
+            genes.put(gene, entry);
+        }
+        entry.carriers++;
+        count(species, entry, 1);
+        return entry.gene;
+    }
+
+    /**
+     * Records that an animal no longer carries a gene, because it died.
+     * The gene is forgotten when no living animal carries it.
+     * @param species The animal's species.
+     * @param gene The gene, as returned by intern.
+     */
+    public void release(int species, String gene) {
+        Entry entry = genes.get(gene);
+        if (entry == null) {
+            return;
+        }
+        count(species, entry, -1);
+        if (--entry.carriers == 0) {
+            genes.remove(gene);
+        }
+    }
+
+    /**
+     * Adds to or takes from the counts of each of a gene's alleles.
+     */
+    private void count(int species, Entry entry, int change) {
+        carriers[species] += change;
+        for (int locus = 0; locus < LOCI; locus++) {
+            int allele = entry.alleles[locus];
+            counts[species][locus][allele] += change;
+            sums[species][locus] += change * allele;
+        }
+    }
+
+    /**
+     * @param species A species.
+     * @param locus A locus, such as BREEDING_AGE.
+     * @return The mean value of that locus over the living animals of the
+     *         species (as it is written in the gene, e.g. percent for
+     *         probabilities), or NaN if there are none.
+     */
+    public double getMean(int species, int locus) {
+        return carriers[species] == 0 ? Double.NaN : (double) sums[species][locus] / carriers[species];
+    }
+
+    /**
+     * @param species A species.
+     * @param locus A locus, such as BREEDING_AGE.
+     * @param allele A value of the locus.
+     * @return How many living animals of the species carry that value.
+     */
+    public int getCount(int species, int locus, int allele) {
+        return allele < 0 || allele >= ALLELES ? 0 : counts[species][locus][allele];
+    }
+
+    /**
+     * @param species A species.
+     * @return How many living animals of the species carry a gene.
+     */
+    public int getCarriers(int species) {
+        return carriers[species];
+    }
+
+    /**
+     * @return The number of distinct genes carried by living animals.
+     */
+    public int getDistinct() {
+        return genes.size();
+    }
+
+    /**
+     * @return The name of a locus.
+     */
+    public static String getLocusName(int locus) {
+        return LOCUS_NAMES[locus];
+    }
+
+    /**
+     * Makes room for a number of genes at once, as when an empty field is
+     * filled in one go, so that the table is not grown again and again.
+     * @param expected How many distinct genes to make room for.
+     */
+    public void expect(int expected) {
+        if (genes.isEmpty()) {
+            genes = new HashMap<>(expected * 4 / 3 + 1);
+        }
+    }
+
+    /**
+     * Forgets every gene, as when the field is cleared.
+     */
+    public void clear() {
+        genes.clear();
+        counts = new int[Species.COUNT][LOCI][ALLELES];
+        sums = new long[Species.COUNT][LOCI];
+        carriers = new int[Species.COUNT];
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+
+/**
+ * Runs the simulation without a window and reports the population of
+ * each species at each step. Results are kept in the ResultCache, so a
+ * run that has been made before (with the same code) returns at once.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class HeadlessRunner {
+
+    /**
+     * Runs the simulation, or reads the result of an identical earlier run,
+     * and caches the result. The run draws from its own generator and its
+     * animals read their breeding values from their own genes, so it may
+     * be made from any thread, alongside other runs, and still give the
+     * result its seed describes. Cached results can therefore be shared by
+     * every run, whatever thread made them.
+     * @param seed The seed to run from.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param steps How many steps to run.
+     * @return The population of each species, indexed by step (0 is the
+     *         starting world) then species.
+     */
+    public static int[][] run(long seed, int depth, int width, int steps) {
+        String key = null;
+        ResultCache cache = null;
+        try {
+            cache = ResultCache.getDefault();
+            key = cache == null ? null : ResultCache.key(seed, depth, width, steps);
+            ResultCache.Result cached = cache == null ? null : cache.get(key);
+            if (cached != null) {
+                return cached.getPopulations();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Result cache unavailable: " + e);
+            cache = null;
+        }
+
+        Randomizer.setThreadSeed(seed);
+        try {
+            Simulator simulator = new Simulator(depth, width);
+            int[][] populations = new int[steps + 1][Species.COUNT];
+            simulator.countSpecies(populations[0]);
+            for (int step = 1; step <= steps; step++) {
+                simulator.simulateOneStep();
+                simulator.countSpecies(populations[step]);
+            }
+            if (cache != null) {
+                try {
+                    cache.put(key, populations, simulator.getField(), seed);
+                }
+                catch (IOException e) {
+                    System.err.println("Could not cache result: " + e);
+                }
+            }
+            return populations;
+        }
+        finally {
+            Randomizer.clearThreadSeed();
+        }
+    }
+
+    /**
+     * Runs once and prints the populations as CSV.
+     * Run with: java HeadlessRunner seed steps [depth] [width]
+     */
+    public static void main(String[] args) {
+        long seed = Long.parseLong(args[0]);
+        int steps = Integer.parseInt(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : depth;
+
+        long start = System.nanoTime();
+        int[][] populations = run(seed, depth, width, steps);
+        System.err.printf("%d steps in %.0f ms%n", steps, (System.nanoTime() - start) / 1e6);
+        System.out.print("step");
+        for (int species = 0; species < Species.COUNT; species++) {
+            System.out.print("," + Species.getName(species));
+        }
+        System.out.println();
+        for (int step = 0; step < populations.length; step++) {
+            System.out.print(step);
+            for (int count : populations[step]) {
+                System.out.print("," + count);
+            }
+            System.out.println();
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.LinkedList;
@@ -12,22 +13,25 @@ import javafx.scene.paint.Color;
  */
 public class Jaguar extends Animal {
 
-    private static int BREEDING_AGE;
-    private static int MAX_AGE;
-    private static double BREEDING_PROBABILITY;
-    private static double DISEASE_PROBABILITY;
-    private static double METABOLISM;
-    private static int MAX_LITTER_SIZE;
     private static int SQUIRREL_FOOD_VALUE = 8;
     private static int CAPYBARA_FOOD_VALUE = 12;
     private static int DEER_FOOD_VALUE = 15;
     private static int MAX_FOOD_LEVEL = 30;
+    private static final int DISEASE_DURATION = 40;
+    // How far away (in moves) the jaguar can see prey.
+    private static int VISION_RADIUS = 6;
+    private static final int PREY = (1 << Species.SQUIRREL) | (1 << Species.CAPYBARA) | (1 << Species.DEER);
     private static Random rand = Randomizer.getRandom();
     
+    // Life cycle values, read from this animal's own gene.
+    private int breedingAge;
+    private int maxAge;
+    private double breedingProbability;
+    private double diseaseProbability;
+    private double metabolism;
+    private int maxLitterSize;
     private int age;
     private double foodLevel;
-    private boolean disease;
-    private int disease_count;
     
     /**
      * Create a new jaguar. A jaguar may be created with age
@@ -43,17 +47,34 @@ public class Jaguar extends Animal {
      */
     public Jaguar(boolean randomAge, Field field, Location location, Color col, String sex, boolean firstGeneration, String parentGene) {
         super(field, location, col, sex, firstGeneration, parentGene);
-        this.disease = false;
         foodLevel = MAX_FOOD_LEVEL;
         
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
+            age = rand.nextInt(maxAge);
         }
         else {
             age = 0;
         }
     }
     
+    /**
+     * Resets the jaguar to a newborn when it is reused from a pool.
+     */
+    @Override
+    protected void resetState() {
+        foodLevel = MAX_FOOD_LEVEL;
+        age = 0;
+    }
+
+    /**
+     * Sets the jaguar's age and food level when it is loaded from a saved world.
+     */
+    @Override
+    protected void restoreState(int age, double foodLevel) {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+    
     /**
      * This is what the jaguar does most of the time - it runs 
      * around. 
@@ -61,14 +82,24 @@ public class Jaguar extends Animal {
      * @param newJaguars A list to return newly born jaguars.
      */
     public void act(List<Animal> newJaguars) {
+        if (!isAlive()) {
+            // Eaten or killed by illness earlier this step.
+            return;
+        }
+        long time = StepMetrics.start();
         incrementAge();
         incrementHunger();
+        time = StepMetrics.lap(StepMetrics.AGING, time);
         
         if(isAlive()) {
-            giveBirth(newJaguars);            
+            giveBirth(newJaguars);
+            time = StepMetrics.lap(StepMetrics.BIRTH, time);
             // Try to move into a free location.
             Location newLocation = findFood();
         
+            if(newLocation == null) {
+                newLocation = stalkPrey();
+            }
             
             if(newLocation == null) {
                 newLocation = getField().getFreeAdjacentLocation(getLocation());
@@ -81,17 +112,15 @@ public class Jaguar extends Animal {
             }
             else {
                 // Overcrowding.
+                StepMetrics.countDeath(StepMetrics.OVERCROWDING);
                 setDead();
             }
+            time = StepMetrics.lap(StepMetrics.FEEDING, time);
             
-            if (!(disease)){
+            if (isAlive()) {
                 tryGainDisease();
             }
-            else{
-                spreadDisease();
-                incrementDiseaseCount();
-            }
-            
+            StepMetrics.lap(StepMetrics.DISEASE, time);
         }
     }
 
@@ -101,7 +130,8 @@ public class Jaguar extends Animal {
      */
     private void incrementAge() {
         age++;
-        if(age > MAX_AGE) {
+        if(age > maxAge && isAlive()) {
+            StepMetrics.countDeath(StepMetrics.OLD_AGE);
             setDead();
         }
     }
@@ -111,50 +141,13 @@ public class Jaguar extends Animal {
      * This could result in the jaguar's death.
      */
     private void incrementHunger() {
-        foodLevel = foodLevel - METABOLISM;
-        if(foodLevel <= 0) {
-            setDead();
-        }
-    }
-    
-    /**
-     * Increases the disease count.
-     * This could result in the jaguar's death.
-     */
-    private void incrementDiseaseCount(){
-        disease_count++;
-        if (disease_count >= 40){
+        foodLevel = foodLevel - metabolism;
+        if(foodLevel <= 0 && isAlive()) {
+            StepMetrics.countDeath(StepMetrics.STARVATION);
             setDead();
         }
     }
     
-    /**
-     * Could gain disease.
-     */
-    private void tryGainDisease(){
-        if (rand.nextDouble() <= DISEASE_PROBABILITY){
-            disease = true;
-            disease_count = 0;
-        }
-    }
-        
-    /**
-     * Spreads disease to others.
-     */
-    private void spreadDisease(){
-        Field field = getField();
-        List<Animal> neighbours = field.getLivingNeighbours(getLocation());
-        
-        for (Animal neighbour : neighbours) {
-            if (neighbour instanceof Jaguar) {
-                Jaguar sNeighbour = (Jaguar) neighbour;
-                if (sNeighbour.isAlive()) {
-                    sNeighbour.tryGainDisease();
-                }
-            }
-        }
-    }    
-    
     /**
      * Looks for food adjacent to the current location.
      * @return Where food was found, or null if it wasn't.
@@ -168,7 +161,9 @@ public class Jaguar extends Animal {
             Object animal = field.getObjectAt(where);
             if(animal instanceof Squirrel) {
                 Squirrel food = (Squirrel) animal;
-                if(food.isAlive() && food.flee()) { 
+                if(food.isAlive() && food.isCaught(this)) { 
+                    field.getActivity().record(ActivityMap.PREDATION, where);
+                    StepMetrics.countDeath(StepMetrics.PREDATION);
                     food.setDead();
                     eat("SQUIRREL");
                     return where;
@@ -176,7 +171,9 @@ public class Jaguar extends Animal {
             }
             else if(animal instanceof Capybara) {
                 Capybara food = (Capybara) animal;
-                if(food.isAlive() && food.flee()) { 
+                if(food.isAlive() && food.isCaught(this)) { 
+                    field.getActivity().record(ActivityMap.PREDATION, where);
+                    StepMetrics.countDeath(StepMetrics.PREDATION);
                     food.setDead();
                     eat("CAPYBARA");
                     return where;
@@ -184,7 +181,9 @@ public class Jaguar extends Animal {
             }
             else if(animal instanceof Deer) {
                 Deer food = (Deer) animal;
-                if(food.isAlive() && food.flee()) { 
+                if(food.isAlive() && food.isCaught(this)) { 
+                    field.getActivity().record(ActivityMap.PREDATION, where);
+                    StepMetrics.countDeath(StepMetrics.PREDATION);
                     food.setDead();
                     eat("DEER");
                     return where;
@@ -195,6 +194,28 @@ public class Jaguar extends Animal {
     
     }
     
+    /**
+     * Looks for prey beyond the adjacent cells, as far as the jaguar can
+     * see, and heads one step toward the nearest.
+     * @return Where to move to, or null if no prey is in sight.
+     */
+    private Location stalkPrey() {
+        Field field = getField();
+        Location prey = field.getIndex().nearest(PREY, getLocation(), VISION_RADIUS);
+        if (prey == null) {
+            return null;
+        }
+        return field.stepToward(getLocation(), prey);
+    }
+    
+    /**
+     * Sets how far away jaguars can see prey.
+     * @param radius The vision radius, in moves.
+     */
+    public static void setVisionRadius(int radius) {
+        VISION_RADIUS = radius;
+    }
+    
     /**
      * Ensures max limit of foodLevel is maintained.
      */
@@ -219,37 +240,32 @@ public class Jaguar extends Animal {
      * @param newJaguars A list to return newly born jaguars.
      */
     private void giveBirth(List<Animal> newJaguars) {
-        Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
         int births = breed();
+        if (births == 0) {
+            return;
+        }
         
-        for (int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            List<Animal> neighbors = field.getLivingNeighbours(getLocation());
-    
-            Jaguar mate = null;
-            for (Animal neighbor : neighbors) {
-                if (neighbor instanceof Jaguar && !this.getSex().equals(neighbor.getSex())) {
-                    mate = (Jaguar) neighbor;
-                    break;
-                }
-            }
-    
-            if (mate != null) {
-                String parent1Gene = this.getGene();
-                String parent2Gene = mate.getGene();
-                String newGene = crossoverGenes(parent1Gene, parent2Gene);
-    
-                newGene = mutateGene(newGene);
-    
-                boolean isMale = Math.random() < 0.5;
-    
-                Jaguar young = new Jaguar(false, field, loc, getColor(), isMale ? "Male" : "Female", false, newGene);
-                newJaguars.add(young);
-            }
+        Field field = getField();
+        List<Location> free = new ArrayList<>(8);
+        Animal mate = field.findMate(this, free);
+        if (mate == null) {
+            return;
         }
-    }
         
+        for (int b = 0; b < births && b < free.size(); b++) {
+            String newGene = crossoverGenes(this.getGene(), mate.getGene());
+            newGene = mutateGene(newGene);
+            
+            boolean isMale = rand.nextDouble() < 0.5;
+            
+            Animal young = field.getPool().obtain(Species.JAGUAR, field, free.get(b), getColor(), isMale ? "Male" : "Female", newGene);
+            field.getLineage().recordParents(young.getLineageId(), getLineageId(), mate.getLineageId());
+            field.getActivity().record(ActivityMap.BIRTH, free.get(b));
+            StepMetrics.countBirth();
+            newJaguars.add(young);
+        }
+    }
+
     /**
      * Generates a number representing the number of births,
      * if it can breed.
@@ -257,8 +273,8 @@ public class Jaguar extends Animal {
      */
     private int breed() {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && maxLitterSize > 0 && rand.nextDouble() <= breedingProbability) {
+            births = rand.nextInt(maxLitterSize) + 1;
         }
         return births;
     }
@@ -267,7 +283,39 @@ public class Jaguar extends Animal {
      * A jaguar can breed if it has reached the breeding age.
      */
     private boolean canBreed() {
-        return age >= BREEDING_AGE;
+        return age >= breedingAge;
+    }
+    
+    /**
+     * @return The jaguar's age.
+     */
+    @Override
+    public int getAge() {
+        return age;
+    }
+
+    /**
+     * @return The jaguar's food level.
+     */
+    @Override
+    public double getFoodLevel() {
+        return foodLevel;
+    }
+
+    /**
+     * @return The chance of the jaguar catching disease in a step.
+     */
+    @Override
+    public double getDiseaseProbability() {
+        return diseaseProbability;
+    }
+
+    /**
+     * @return How many steps disease takes to kill the jaguar.
+     */
+    @Override
+    public int getDiseaseDuration() {
+        return DISEASE_DURATION;
     }
     
     /**
@@ -275,11 +323,11 @@ public class Jaguar extends Animal {
      */
     @Override
     public void parseGene(String gene) {
-        BREEDING_AGE = Integer.parseInt(gene.substring(0, 2));
-        MAX_AGE = Integer.parseInt(gene.substring(2, 5));
-        BREEDING_PROBABILITY = (Integer.parseInt(gene.substring(5, 7))) / 100.0;
-        MAX_LITTER_SIZE = Integer.parseInt(gene.substring(7, 9));
-        DISEASE_PROBABILITY = Integer.parseInt(gene.substring(9, 11)) / 100.0;
-        METABOLISM = (Integer.parseInt(gene.substring(11, 14))) / 100.0;
+        breedingAge = Integer.parseInt(gene.substring(0, 2));
+        maxAge = Integer.parseInt(gene.substring(2, 5));
+        breedingProbability = (Integer.parseInt(gene.substring(5, 7))) / 100.0;
+        maxLitterSize = Integer.parseInt(gene.substring(7, 9));
+        diseaseProbability = Integer.parseInt(gene.substring(9, 11)) / 100.0;
+        metabolism = (Integer.parseInt(gene.substring(11, 14))) / 100.0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+/**
+ * Counts recorded values (such as nanoseconds) in buckets whose width
+ * grows with the value, so that any value up to Long.MAX_VALUE is kept
+ * to within about 3% in a small fixed array. Recording is a few shifts
+ * and an array increment, and never allocates.
+ *
+ * Values below 2^SUB_BITS get a bucket each; above that, every power of
+ * two range is split into 2^(SUB_BITS - 1) equal buckets.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+
+    private long[] counts = new long[(64 - SUB_BITS + 1) * HALF_COUNT + HALF_COUNT];
+    private long total, sum, min = Long.MAX_VALUE, max;
+
+    /**
+     * Records one value.
+     * @param value The value; negative values are recorded as zero.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts[bucket(value)]++;
+        total++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @return The mean of the values recorded, or 0 if there are none.
+     */
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * @return The smallest value recorded, or 0 if there are none.
+     */
+    public long getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    /**
+     * @return The largest value recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile From 0 to 100.
+     * @return The value below which that percentage of the values fall,
+     *         to within the width of a bucket, or 0 if there are none.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long wanted = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return Math.min(highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets every value recorded.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * @return The bucket a value falls in.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        // The top SUB_BITS bits of the value pick the bucket within its power of two.
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    /**
+     * @return The largest value that falls in a bucket.
+     */
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / HALF_COUNT - 1;
+        long top = bucket % HALF_COUNT + HALF_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
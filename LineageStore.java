@@ -0,0 +1,310 @@
+import java.util.Arrays;
+
+/**
+ * Records who descends from whom, for the animals in a field and those
+ * of their ancestors that still have living descendants.
+ *
+ * Each animal gets a record when it is born, numbered by its slot in a
+ * set of parallel arrays: its two parents (-1 for a founder, placed when
+ * the field was populated), the step it was born in, its species and its
+ * generation. A record counts its references: one while the animal is
+ * alive and one from each child still recorded. When the count falls to
+ * zero the record is freed and its parents lose a reference in turn, so
+ * a branch that dies out is pruned back to where it joins the living
+ * ancestry, and freed slots are reused. Memory therefore follows the
+ * ancestry of the living animals, not the number of animals ever born.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class LineageStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] firstParent, secondParent, birthStep, generation, references, marks, seen;
+    private byte[] species;
+    private boolean[] alive;
+    private int[] free;
+    private int freeCount, used, living, step, mark;
+    private int[] queue = new int[64];
+
+    /**
+     * Creates an empty store.
+     */
+    public LineageStore() {
+        clear();
+    }
+
+    /**
+     * Records a new living animal with no known parents (a founder).
+     * @param kind The animal's species (see Species).
+     * @return The animal's record number.
+     */
+    public int add(int kind) {
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        }
+        else {
+            if (used == firstParent.length) {
+                grow();
+            }
+            id = used++;
+        }
+        firstParent[id] = -1;
+        secondParent[id] = -1;
+        birthStep[id] = step;
+        generation[id] = 0;
+        references[id] = 1;
+        species[id] = (byte) kind;
+        alive[id] = true;
+        marks[id] = 0;
+        seen[id] = 0;
+        living++;
+        return id;
+    }
+
+    /**
+     * Records the parents of a newborn. Must be called before the newborn
+     * has children of its own.
+     * @param child The newborn's record.
+     * @param parent One parent's record.
+     * @param otherParent The other parent's record.
+     */
+    public void recordParents(int child, int parent, int otherParent) {
+        firstParent[child] = parent;
+        secondParent[child] = otherParent;
+        references[parent]++;
+        references[otherParent]++;
+        generation[child] = Math.max(generation[parent], generation[otherParent]) + 1;
+    }
+
+    /**
+     * Records that an animal has died, pruning any records no longer
+     * needed to trace the ancestry of the living animals.
+     * @param id The animal's record.
+     */
+    public void release(int id) {
+        alive[id] = false;
+        living--;
+        // Walk up through parents whose last reference this was.
+        int stack = 0;
+        queue[stack++] = id;
+        while (stack > 0) {
+            int next = queue[--stack];
+            if (--references[next] > 0) {
+                continue;
+            }
+            int parent = firstParent[next];
+            int otherParent = secondParent[next];
+            if (free.length == freeCount) {
+                free = Arrays.copyOf(free, free.length * 2);
+            }
+            free[freeCount++] = next;
+            if (parent >= 0) {
+                queue = ensureQueue(stack + 2);
+                queue[stack++] = parent;
+                queue[stack++] = otherParent;
+            }
+        }
+    }
+
+    /**
+     * Finds the most recent common ancestor of two animals: the latest-born
+     * animal that is an ancestor of both (an animal counts as its own ancestor).
+     * @param a One animal's record.
+     * @param b The other animal's record.
+     * @return The common ancestor's record, or -1 if they have none.
+     */
+    public int commonAncestor(int a, int b) {
+        // Mark every ancestor of a, then look through the ancestors of b for marks.
+        int ofA = ++mark;
+        collectAncestors(a, ofA);
+        int ofB = ++mark;
+        int best = -1;
+        int length = 0;
+        queue[length++] = b;
+        seen[b] = ofB;
+        for (int i = 0; i < length; i++) {
+            int next = queue[i];
+            if (marks[next] == ofA && (best < 0 || birthStep[next] > birthStep[best])) {
+                best = next;
+            }
+            int parent = firstParent[next];
+            if (parent < 0) {
+                continue;
+            }
+            int otherParent = secondParent[next];
+            queue = ensureQueue(length + 2);
+            if (seen[parent] != ofB) {
+                seen[parent] = ofB;
+                queue[length++] = parent;
+            }
+            if (seen[otherParent] != ofB) {
+                seen[otherParent] = ofB;
+                queue[length++] = otherParent;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Marks an animal and all its recorded ancestors with the given mark.
+     */
+    private void collectAncestors(int id, int value) {
+        int length = 0;
+        queue[length++] = id;
+        marks[id] = value;
+        for (int i = 0; i < length; i++) {
+            int parent = firstParent[queue[i]];
+            if (parent < 0) {
+                continue;
+            }
+            int otherParent = secondParent[queue[i]];
+            queue = ensureQueue(length + 2);
+            if (marks[parent] != value) {
+                marks[parent] = value;
+                queue[length++] = parent;
+            }
+            if (marks[otherParent] != value) {
+                marks[otherParent] = value;
+                queue[length++] = otherParent;
+            }
+        }
+    }
+
+    /**
+     * Works out how much of the living animals' ancestry comes from each
+     * founder: every animal gets half its ancestry from each parent, and a
+     * founder's share is averaged over all the living animals.
+     * @return The share of each founder, indexed by record number (0 for
+     *         records that are not founders); the shares add up to 1.
+     */
+    public double[] founderContributions() {
+        double[] share = new double[used];
+        if (living == 0) {
+            return share;
+        }
+        // Visit records from the latest born to the earliest, passing each
+        // animal's share half to each parent; parents are always born first.
+        long[] order = new long[used - freeCount];
+        int count = 0;
+        for (int id = 0; id < used; id++) {
+            if (references[id] > 0) {
+                order[count++] = (long) birthStep[id] << 32 | id;
+                if (alive[id]) {
+                    share[id] = 1.0 / living;
+                }
+            }
+        }
+        Arrays.sort(order);
+        for (int i = count - 1; i >= 0; i--) {
+            int id = (int) order[i];
+            int parent = firstParent[id];
+            if (parent >= 0) {
+                share[parent] += share[id] / 2;
+                share[secondParent[id]] += share[id] / 2;
+                share[id] = 0;
+            }
+        }
+        return share;
+    }
+
+    /**
+     * Sets the step that animals added from now on are born in.
+     * @param step The current step.
+     */
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    /**
+     * @return The number of records kept, living or ancestral.
+     */
+    public int size() {
+        return used - freeCount;
+    }
+
+    /**
+     * @return The number of living animals recorded.
+     */
+    public int getLiving() {
+        return living;
+    }
+
+    public boolean isAlive(int id) {
+        return alive[id];
+    }
+
+    public boolean isFounder(int id) {
+        return firstParent[id] < 0;
+    }
+
+    /**
+     * @param id A record.
+     * @param which 0 or 1.
+     * @return One of the parents of the record, or -1 for a founder.
+     */
+    public int getParent(int id, int which) {
+        return which == 0 ? firstParent[id] : secondParent[id];
+    }
+
+    public int getBirthStep(int id) {
+        return birthStep[id];
+    }
+
+    /**
+     * @return The number of generations between an animal and its most
+     *         distant founder (0 for a founder).
+     */
+    public int getGeneration(int id) {
+        return generation[id];
+    }
+
+    public int getSpecies(int id) {
+        return species[id];
+    }
+
+    /**
+     * Forgets every record, as when the field is cleared.
+     */
+    public void clear() {
+        firstParent = new int[INITIAL_CAPACITY];
+        secondParent = new int[INITIAL_CAPACITY];
+        birthStep = new int[INITIAL_CAPACITY];
+        generation = new int[INITIAL_CAPACITY];
+        references = new int[INITIAL_CAPACITY];
+        marks = new int[INITIAL_CAPACITY];
+        seen = new int[INITIAL_CAPACITY];
+        species = new byte[INITIAL_CAPACITY];
+        alive = new boolean[INITIAL_CAPACITY];
+        free = new int[INITIAL_CAPACITY];
+        freeCount = 0;
+        used = 0;
+        living = 0;
+        step = 0;
+        mark = 0;
+    }
+
+    /**
+     * Doubles the size of every array.
+     */
+    private void grow() {
+        int capacity = firstParent.length * 2;
+        firstParent = Arrays.copyOf(firstParent, capacity);
+        secondParent = Arrays.copyOf(secondParent, capacity);
+        birthStep = Arrays.copyOf(birthStep, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+        references = Arrays.copyOf(references, capacity);
+        marks = Arrays.copyOf(marks, capacity);
+        seen = Arrays.copyOf(seen, capacity);
+        species = Arrays.copyOf(species, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+    }
+
+    /**
+     * @return The work queue, made at least the given length.
+     */
+    private int[] ensureQueue(int length) {
+        return length <= queue.length ? queue : Arrays.copyOf(queue, Math.max(length, queue.length * 2));
+    }
+}
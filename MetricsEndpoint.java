@@ -0,0 +1,105 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the state of a running simulation at http://localhost:port/metrics
+ * in the Prometheus text format, so it can be scraped and graphed like
+ * any other service: steps simulated, steps per second, step time
+ * percentiles, the population of each species and heap use.
+ *
+ * Only this machine can connect unless the program is started with
+ * -Dmetrics.host set to an address to listen on instead, such as 0.0.0.0
+ * for every interface. There is no authentication, so only widen it on
+ * a trusted network.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class MetricsEndpoint {
+
+    public static final int DEFAULT_PORT = 9400;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private HttpServer server;
+    private SimulationControl control;
+
+    /**
+     * Starts serving metrics on the given port, on the loopback address
+     * unless -Dmetrics.host says otherwise.
+     * @param port The port to listen on.
+     * @param control Where the step counts, times and populations come from.
+     */
+    public MetricsEndpoint(int port, SimulationControl control) throws IOException {
+        this.control = control;
+        String host = System.getProperty("metrics.host");
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    /**
+     * Stops serving metrics.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Answers one scrape.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return Every metric, in the Prometheus text format.
+     */
+    public String render() {
+        StringBuilder text = new StringBuilder();
+        header(text, "simulation_steps_total", "counter", "Steps simulated.");
+        text.append("simulation_steps_total ").append(control.getSteps()).append('\n');
+
+        header(text, "simulation_steps_per_second", "gauge", "Steps simulated per second over the last second.");
+        text.append("simulation_steps_per_second ").append(control.getStepsPerSecond()).append('\n');
+
+        header(text, "simulation_step_seconds", "summary", "Time taken to simulate one step.");
+        for (double quantile : QUANTILES) {
+            text.append("simulation_step_seconds{quantile=\"").append(quantile).append("\"} ")
+                .append(control.getStepTime(quantile * 100) / 1e9).append('\n');
+        }
+
+        header(text, "simulation_population", "gauge", "Living animals and plants of each species.");
+        int[] populations = control.getPopulations();
+        for (int species = 0; species < Species.COUNT; species++) {
+            text.append("simulation_population{species=\"").append(Species.getName(species)).append("\"} ")
+                .append(populations[species]).append('\n');
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        header(text, "jvm_heap_used_bytes", "gauge", "Heap in use.");
+        text.append("jvm_heap_used_bytes ").append(heap.getUsed()).append('\n');
+        header(text, "jvm_heap_committed_bytes", "gauge", "Heap reserved from the operating system.");
+        text.append("jvm_heap_committed_bytes ").append(heap.getCommitted()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Adds the HELP and TYPE lines that come before a metric.
+     */
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * A pyramid of ever coarser per-species population counts over a field,
+ * for drawing zoomed-out views. Level k splits the field into blocks of
+ * 2^k by 2^k cells; levels start at BASE_LEVEL (8 x 8 blocks) and go up
+ * until one block covers the whole field.
+ *
+ * The field updates every level as animals are placed and cleared, so a
+ * zoomed-out view is drawn from a few thousand blocks rather than by
+ * visiting every cell.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class MipPyramid {
+
+    public static final int BASE_LEVEL = 3;
+
+    private int topLevel;
+    private int[] blockCols;
+    private int[][][] counts;
+
+    /**
+     * Creates a pyramid holding the current contents of the field.
+     * @param field The field to count.
+     */
+    public MipPyramid(Field field) {
+        int size = Math.max(field.getDepth(), field.getWidth());
+        topLevel = BASE_LEVEL;
+        while ((1 << topLevel) < size) {
+            topLevel++;
+        }
+
+        int levels = topLevel - BASE_LEVEL + 1;
+        blockCols = new int[levels];
+        counts = new int[levels][][];
+        for (int l = 0; l < levels; l++) {
+            int shift = BASE_LEVEL + l;
+            int rows = ((field.getDepth() - 1) >> shift) + 1;
+            blockCols[l] = ((field.getWidth() - 1) >> shift) + 1;
+            counts[l] = new int[Species.COUNT][rows * blockCols[l]];
+        }
+
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int col = 0; col < field.getWidth(); col++) {
+                Animal animal = field.getObjectAt(row, col);
+                if (animal != null && animal.isAlive()) {
+                    add(Species.indexOf(animal), row, col, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the count of a species at one cell, at every level.
+     * @param species The species number (see Species).
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param delta How much to change the count by.
+     */
+    public void add(int species, int row, int col, int delta) {
+        for (int l = 0; l < counts.length; l++) {
+            int shift = BASE_LEVEL + l;
+            counts[l][species][(row >> shift) * blockCols[l] + (col >> shift)] += delta;
+        }
+    }
+
+    /**
+     * Finds the most common species in a block.
+     * @param level The level, from BASE_LEVEL to getTopLevel().
+     * @param blockRow The row of the block at that level.
+     * @param blockCol The column of the block at that level.
+     * @return The species number of the most common species, or -1 if the block is empty.
+     */
+    public int dominantSpecies(int level, int blockRow, int blockCol) {
+        int l = level - BASE_LEVEL;
+        int block = blockRow * blockCols[l] + blockCol;
+        int dominant = -1;
+        int most = 0;
+        for (int species = 0; species < Species.COUNT; species++) {
+            if (counts[l][species][block] > most) {
+                most = counts[l][species][block];
+                dominant = species;
+            }
+        }
+        return dominant;
+    }
+
+    /**
+     * Empties the pyramid.
+     */
+    public void clear() {
+        for (int[][] level : counts) {
+            for (int[] speciesCounts : level) {
+                Arrays.fill(speciesCounts, 0);
+            }
+        }
+    }
+
+    /**
+     * @return The coarsest level, where one block covers the whole field.
+     */
+    public int getTopLevel() {
+        return topLevel;
+    }
+}
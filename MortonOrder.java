@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Orders agents along a Morton (Z-order) curve over their locations, so
+ * that agents next to each other in the list also sit close together in
+ * the field and their neighbourhood lookups touch the same memory.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class MortonOrder {
+
+    // Fraction of out-of-order neighbours in the list above which it is re-sorted.
+    private static final double DISORDER_THRESHOLD = 0.25;
+    // Key used for dead agents, so they collect at the end of the list.
+    private static final long NO_LOCATION = 0xffffffffL;
+
+    /**
+     * Interleaves the bits of a row and column into a Morton code.
+     * Rows and columns must be below 65536.
+     * @param row The row.
+     * @param col The column.
+     * @return The Morton code of the cell.
+     */
+    public static long encode(int row, int col) {
+        return spread(row) << 1 | spread(col);
+    }
+
+    /**
+     * Measures how far the list is from Morton order: the fraction of
+     * consecutive pairs whose codes go backwards.
+     * @param animals The list to measure.
+     * @return A value between 0 (sorted) and 1.
+     */
+    public static double disorder(List<Animal> animals) {
+        if (animals.size() < 2) {
+            return 0;
+        }
+        int backwards = 0;
+        long previous = key(animals.get(0));
+        for (int i = 1; i < animals.size(); i++) {
+            long current = key(animals.get(i));
+            if (current < previous) {
+                backwards++;
+            }
+            previous = current;
+        }
+        return (double) backwards / (animals.size() - 1);
+    }
+
+    /**
+     * Re-sorts the list into Morton order if it has become too disordered.
+     * @param animals The list to sort in place.
+     * @return true if the list was sorted.
+     */
+    public static boolean sortIfDisordered(List<Animal> animals) {
+        if (disorder(animals) <= DISORDER_THRESHOLD) {
+            return false;
+        }
+        sort(animals);
+        return true;
+    }
+
+    /**
+     * Sorts the list into Morton order. The codes are packed together with
+     * each agent's index and sorted as primitives, so no comparator or
+     * boxing is involved.
+     * @param animals The list to sort in place.
+     */
+    public static void sort(List<Animal> animals) {
+        int size = animals.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(animals.get(i)) << 31 | i;
+        }
+        Arrays.sort(keys);
+
+        Animal[] sorted = new Animal[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = animals.get((int) (keys[i] & 0x7fffffff));
+        }
+        for (int i = 0; i < size; i++) {
+            animals.set(i, sorted[i]);
+        }
+    }
+
+    /**
+     * @return The Morton code of an animal's location, or NO_LOCATION if it has none.
+     */
+    private static long key(Animal animal) {
+        Location location = animal.getLocation();
+        if (location == null) {
+            return NO_LOCATION;
+        }
+        return encode(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Spreads the low 16 bits of a value out to the even bit positions.
+     */
+    private static long spread(int value) {
+        long x = value & 0xffffL;
+        x = (x | (x << 8)) & 0x00ff00ffL;
+        x = (x | (x << 4)) & 0x0f0f0f0fL;
+        x = (x | (x << 2)) & 0x33333333L;
+        x = (x | (x << 1)) & 0x55555555L;
+        return x;
+    }
+}
@@ -13,8 +13,8 @@ public class Plant extends Animal
     private static final int MAX_AGE = 100;
     private int count; 
     private int bites;
-    private double SEED_PROBABILITY = 0.05;
-    private int MAX_PLANT_COUNT = 3000; // limits plants to 3000
+    private static final double SEED_PROBABILITY = 0.05;
+    private static final int MAX_PLANT_COUNT = 3000; // limits plants to 3000
     private int PLANT_COUNT;
     
     private static final Random rand = Randomizer.getRandom();
@@ -30,11 +30,35 @@ public class Plant extends Animal
         PLANT_COUNT = 5000;
     }   
     
+    /**
+     * Resets the plant to a seedling when it is reused from a pool.
+     */
+    @Override
+    protected void resetState() {
+        age = 0;
+        count = 0;
+        bites = 0;
+        PLANT_COUNT = 5000;
+    }
+
+    /**
+     * Sets the plant's age when it is loaded from a saved world.
+     */
+    @Override
+    protected void restoreState(int age, double foodLevel) {
+        this.age = age;
+    }
+    
     /**
      * After five generations, plants regrow.
      * @param newPlants A list to return newly grown plants.
      */
     public void act(List<Animal> newPlants) {
+        if (!isAlive()) {
+            // Eaten or trampled earlier this step; its cell is no longer its own.
+            return;
+        }
+        long time = StepMetrics.start();
         incrementAge();
         count++;
         
@@ -48,6 +72,7 @@ public class Plant extends Animal
             grow();
             count = 0;
         }
+        StepMetrics.lap(StepMetrics.PLANTS, time);
     }
     
     /**
@@ -109,8 +134,7 @@ public class Plant extends Animal
         
         for (int b = 0; b < births && free.size() > 0; b++) {
             Location loc = free.remove(0);
-            List<Animal> neighbors = field.getLivingNeighbours(getLocation());
-            Plant youngPlant = new Plant(field, getLocation(), Color.GREEN, null, false, null);
+            Animal youngPlant = field.getPool().obtain(Species.PLANT, field, loc, Color.GREEN, null, null);
             newPlants.add(youngPlant);
         }
     }
@@ -127,6 +151,14 @@ public class Plant extends Animal
         return seeds;
     }
     
+    /**
+     * @return The plant's age.
+     */
+    @Override
+    public int getAge() {
+        return age;
+    }
+    
     /**
      * Sets the number of existing plants.
      */
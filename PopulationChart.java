@@ -0,0 +1,69 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws the population of each species over time, from a PopulationHistory.
+ *
+ * The history already holds the lowest and highest population in each
+ * column, so a line has at most two points per column, spikes are never
+ * lost, and drawing takes the same time however many steps have been
+ * run. The point arrays are made once, so drawing allocates nothing.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class PopulationChart extends Canvas {
+
+    private static final Color BACKGROUND_COLOR = Color.WHITE;
+    private int width, height;
+    private double[] xPoints, yPoints;
+    GraphicsContext gc;
+
+    /**
+     * Creates an empty chart of the given size.
+     */
+    public PopulationChart(int width, int height) {
+        super(width, height);
+        gc = getGraphicsContext2D();
+        this.width = width;
+        this.height = height;
+        xPoints = new double[2 * width];
+        yPoints = new double[2 * width];
+    }
+
+    /**
+     * Draws the columns of the history across the width of the chart.
+     * @param history The populations to draw, with no more columns than
+     *                the chart is wide.
+     */
+    public void draw(PopulationHistory history) {
+        gc.setFill(BACKGROUND_COLOR);
+        gc.fillRect(0, 0, width, height);
+        int columns = history.size();
+        if (columns < 2) {
+            return;
+        }
+
+        double spacing = (width - 1.0) / (columns - 1);
+        int top = history.getTop();
+        gc.setLineWidth(1);
+        for (int species = 0; species < Species.COUNT; species++) {
+            int points = 0;
+            for (int column = 0; column < columns; column++) {
+                xPoints[points] = column * spacing;
+                yPoints[points++] = toY(history.getLow(species, column), top);
+                xPoints[points] = column * spacing;
+                yPoints[points++] = toY(history.getHigh(species, column), top);
+            }
+            gc.setStroke(Species.getColor(species));
+            gc.strokePolyline(xPoints, yPoints, points);
+        }
+    }
+
+    /**
+     * @return The y coordinate of a population, when the top of the chart is the given population.
+     */
+    private double toY(int count, int top) {
+        return height - 1 - (double) count / top * (height - 2);
+    }
+}
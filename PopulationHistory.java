@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * Remembers the population of each species over the run, as the lowest
+ * and highest population seen in each of a fixed number of columns.
+ *
+ * Each column covers the same number of steps. When a step falls past
+ * the last column, neighbouring columns are merged in pairs and each then
+ * covers twice as many steps, so the whole run always fits. Recording a
+ * step updates one column and never allocates, and drawing the history
+ * takes time in proportion to the number of columns, not of steps.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class PopulationHistory {
+
+    private int columns;
+    private int[][] low, high;
+    private int firstStep, lastStep;
+    private int stepsPerColumn = 1;
+    // How many columns hold steps, and the highest population recorded.
+    private int used, top = 1;
+
+    /**
+     * Creates an empty history.
+     * @param columns How many columns to keep, usually one per pixel of the chart.
+     */
+    public PopulationHistory(int columns) {
+        this.columns = columns;
+        low = new int[Species.COUNT][columns];
+        high = new int[Species.COUNT][columns];
+    }
+
+    /**
+     * Records the population of each species at a step. A step that is
+     * not later than the last one recorded is ignored, so recording the
+     * same step twice does not count it twice.
+     * @param step The step number.
+     * @param speciesCounts The population of each species, by species number.
+     */
+    public void record(int step, int[] speciesCounts) {
+        if (used > 0 && step <= lastStep) {
+            return;
+        }
+        if (used == 0) {
+            firstStep = step;
+        }
+        int column = (step - firstStep) / stepsPerColumn;
+        while (column >= columns) {
+            mergePairs();
+            column = (step - firstStep) / stepsPerColumn;
+        }
+        for (int species = 0; species < Species.COUNT; species++) {
+            int count = speciesCounts[species];
+            if (column >= used) {
+                // Columns skipped over (when steps are far apart) take this step's values.
+                Arrays.fill(low[species], used, column + 1, count);
+                Arrays.fill(high[species], used, column + 1, count);
+            }
+            else {
+                low[species][column] = Math.min(low[species][column], count);
+                high[species][column] = Math.max(high[species][column], count);
+            }
+            top = Math.max(top, count);
+        }
+        used = Math.max(used, column + 1);
+        lastStep = step;
+    }
+
+    /**
+     * Merges each pair of neighbouring columns into one, so each column
+     * covers twice as many steps.
+     */
+    private void mergePairs() {
+        for (int species = 0; species < Species.COUNT; species++) {
+            for (int column = 0; column < used; column += 2) {
+                int lowest = low[species][column];
+                int highest = high[species][column];
+                if (column + 1 < used) {
+                    lowest = Math.min(lowest, low[species][column + 1]);
+                    highest = Math.max(highest, high[species][column + 1]);
+                }
+                low[species][column / 2] = lowest;
+                high[species][column / 2] = highest;
+            }
+        }
+        used = (used + 1) / 2;
+        stepsPerColumn *= 2;
+    }
+
+    /**
+     * Forgets every recorded step.
+     */
+    public void clear() {
+        used = 0;
+        top = 1;
+        stepsPerColumn = 1;
+    }
+
+    /**
+     * Makes this history a copy of another with the same number of columns,
+     * so it can be drawn while the other goes on recording.
+     * @param other The history to copy.
+     */
+    public void copyFrom(PopulationHistory other) {
+        for (int species = 0; species < Species.COUNT; species++) {
+            System.arraycopy(other.low[species], 0, low[species], 0, other.used);
+            System.arraycopy(other.high[species], 0, high[species], 0, other.used);
+        }
+        used = other.used;
+        top = other.top;
+        firstStep = other.firstStep;
+        lastStep = other.lastStep;
+        stepsPerColumn = other.stepsPerColumn;
+    }
+
+    /**
+     * @return The number of columns holding steps.
+     */
+    public int size() {
+        return used;
+    }
+
+    /**
+     * @param species The species number (see Species).
+     * @param column From 0 (the earliest steps) to size() - 1.
+     * @return The lowest population of the species in that column's steps.
+     */
+    public int getLow(int species, int column) {
+        return low[species][column];
+    }
+
+    /**
+     * @param species The species number (see Species).
+     * @param column From 0 (the earliest steps) to size() - 1.
+     * @return The highest population of the species in that column's steps.
+     */
+    public int getHigh(int species, int column) {
+        return high[species][column];
+    }
+
+    /**
+     * @return The highest population of any species recorded, and at least 1.
+     */
+    public int getTop() {
+        return top;
+    }
+}
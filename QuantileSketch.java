@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Estimates quantiles of a stream of values in a fixed amount of memory,
+ * however many values are added (a merging t-digest).
+ *
+ * Values are kept as a sorted list of centroids, each a mean and a
+ * weight. New values are buffered and merged in batches; when merging,
+ * neighbouring centroids are combined as long as together they cover
+ * only a small slice of the distribution. The slices are narrow near the
+ * tails and wide in the middle, so extreme quantiles stay accurate.
+ * The number of centroids stays below about the compression.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class QuantileSketch {
+
+    private final double compression;
+    private double[] means, weights;
+    private int centroids;
+    private double[] buffer;
+    private int buffered;
+    private double total;
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param compression How many centroids to keep, roughly; more is
+     *                    more accurate. 50 to 200 is usual.
+     */
+    public QuantileSketch(double compression) {
+        this.compression = compression;
+        int size = (int) Math.ceil(compression) + 8;
+        means = new double[size];
+        weights = new double[size];
+        buffer = new double[size * 4];
+    }
+
+    /**
+     * Adds one value.
+     * @param value The value.
+     */
+    public void add(double value) {
+        if (buffered == buffer.length) {
+            merge();
+        }
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return The number of values added.
+     */
+    public long getCount() {
+        return (long) (total + buffered);
+    }
+
+    /**
+     * @param quantile From 0 to 1.
+     * @return An estimate of the value below which that share of the
+     *         values fall, or NaN if there are none.
+     */
+    public double getQuantile(double quantile) {
+        merge();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        // Each centroid's mean is taken to sit at the middle of its weight;
+        // between those points, and out to min and max, interpolate.
+        double wanted = quantile * total;
+        double before = 0;
+        double previousMean = min;
+        double previousAt = 0;
+        for (int i = 0; i < centroids; i++) {
+            double at = before + weights[i] / 2;
+            if (wanted < at) {
+                double share = at == previousAt ? 0 : (wanted - previousAt) / (at - previousAt);
+                return previousMean + share * (means[i] - previousMean);
+            }
+            previousMean = means[i];
+            previousAt = at;
+            before += weights[i];
+        }
+        double share = total == previousAt ? 0 : (wanted - previousAt) / (total - previousAt);
+        return previousMean + Math.min(share, 1) * (max - previousMean);
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    private void merge() {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        double[] oldMeans = means;
+        double[] oldWeights = weights;
+        int oldCount = centroids;
+        double newTotal = total + buffered;
+        means = new double[oldMeans.length];
+        weights = new double[oldWeights.length];
+        centroids = 0;
+
+        // Walk the old centroids and the sorted buffer together, in order
+        // of value, growing the current centroid while it stays in its slice.
+        double before = 0;
+        double limit = sliceEnd(0, newTotal);
+        int i = 0, j = 0;
+        while (i < oldCount || j < buffered) {
+            double mean, weight;
+            if (j == buffered || (i < oldCount && oldMeans[i] <= buffer[j])) {
+                mean = oldMeans[i];
+                weight = oldWeights[i++];
+            }
+            else {
+                mean = buffer[j++];
+                weight = 1;
+            }
+            int last = centroids - 1;
+            if (last >= 0 && before + weight <= limit) {
+                weights[last] += weight;
+                means[last] += (mean - means[last]) * weight / weights[last];
+            }
+            else {
+                if (last >= 0) {
+                    limit = sliceEnd(before, newTotal);
+                }
+                if (centroids == means.length) {
+                    means = Arrays.copyOf(means, centroids * 2);
+                    weights = Arrays.copyOf(weights, centroids * 2);
+                }
+                means[centroids] = mean;
+                weights[centroids] = weight;
+                centroids++;
+            }
+            before += weight;
+        }
+        total = newTotal;
+        buffered = 0;
+    }
+
+    /**
+     * @return The weight at which a centroid starting at the given weight
+     *         must end, using the arcsine scale of the t-digest.
+     */
+    private double sliceEnd(double start, double total) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * start / total - 1) + 1;
+        if (k >= compression / 4) {
+            return total;
+        }
+        return total * (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+}
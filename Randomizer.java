@@ -1,39 +1,102 @@
 import java.util.Random;
 /**
- * Provides control over the randomization of the simulation. By using the
- * shared, fixed-seed randomizer, repeated runs will perform exactly the same
- * (which helps with testing). Set 'useShared' to false to get different random
- * behaviour every time.
+ * Provides control over the randomization of the simulation. All randomness
+ * is drawn from a single shared generator seeded from a master seed. Each run
+ * picks a fresh master seed, so runs still behave differently every time,
+ * but a run can be repeated exactly by setting its seed again (see Replay).
+ *
+ * A thread can instead be given a generator and seed of its own, so that
+ * several simulations can run side by side, each from its own seed (see
+ * EnsembleRunner). Threads without one keep using the shared generator.
  *
  * @author Aditya Ranjan and Abdrakhman Salmenov
  */
 public class Randomizer {
-  
-    private static final int SEED = 1111;
-    private static final Random rand = new Random(SEED);
-    private static final boolean useShared = false;
+
+    private static long seed = new Random().nextLong();
+    private static final Random shared = new Random(seed);
+    private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
+    private static final ThreadLocal<Long> threadSeed = new ThreadLocal<>();
+    // Set once any thread has its own generator, so that until then
+    // drawing a number does not have to look one up.
+    private static volatile boolean threadSeeds = false;
+
+    // Hands every draw on to the calling thread's generator. Each draw is
+    // taken from the top bits of that generator's next int, which gives
+    // exactly the numbers it would have given itself.
+    private static final Random rand = new Random() {
+        @Override
+        protected int next(int bits) {
+            return current().nextInt() >>> (32 - bits);
+        }
+    };
 
     /**
      * Provides a random generator.
      * @return A random object.
      */
     public static Random getRandom() {
-        if (useShared) {
-            return rand;
-        }
-        else {
-            return new Random();
+        return rand;
+    }
+
+    /**
+     * @return The master seed the current thread's generator was started from.
+     */
+    public static long getSeed() {
+        if (threadSeeds) {
+            Long own = threadSeed.get();
+            if (own != null) {
+                return own;
+            }
         }
+        return seed;
+    }
+
+    /**
+     * Changes the master seed and restarts the shared generator from it.
+     * @param newSeed The new master seed.
+     */
+    public static void setSeed(long newSeed) {
+        seed = newSeed;
+        shared.setSeed(seed);
     }
 
     /**
-     * Resets the randomization.
-     * This will have no effect if randomization is not through
-     * a shared Random generator.
+     * Resets the randomization back to the start of the master seed.
      */
     public static void reset() {
-        if (useShared) {
-            rand.setSeed(SEED);
+        shared.setSeed(seed);
+    }
+
+    /**
+     * Gives the current thread a generator of its own, started from the
+     * given seed, in place of the shared one.
+     * @param newSeed The seed for this thread.
+     */
+    public static void setThreadSeed(long newSeed) {
+        threadSeeds = true;
+        threadSeed.set(newSeed);
+        threadRandom.set(new Random(newSeed));
+    }
+
+    /**
+     * Sends the current thread back to the shared generator.
+     */
+    public static void clearThreadSeed() {
+        threadSeed.remove();
+        threadRandom.remove();
+    }
+
+    /**
+     * @return The generator the current thread draws from.
+     */
+    private static Random current() {
+        if (threadSeeds) {
+            Random own = threadRandom.get();
+            if (own != null) {
+                return own;
+            }
         }
+        return shared;
     }
-}
\ No newline at end of file
+}
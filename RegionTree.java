@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Keeps per-species population counts of a field in two-dimensional
+ * Fenwick trees, so that the number of animals of a species in any
+ * rectangle can be found, and kept up to date as animals move, in
+ * O(log depth * log width) time.
+ *
+ * This is the incremental alternative to rebuilding a summed-area table
+ * every step (see FieldStats.buildRegionTable): updates are a little
+ * dearer, but nothing has to be rebuilt.
+ *
+ * Like the table, it counts living animals only: the field takes an
+ * animal out of the trees as soon as it dies, even before its cell is
+ * cleared.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class RegionTree {
+
+    private int depth, width;
+    private int[][] trees;
+
+    /**
+     * Creates trees holding the current contents of the field.
+     * @param field The field to count.
+     */
+    public RegionTree(Field field) {
+        depth = field.getDepth();
+        width = field.getWidth();
+        trees = new int[Species.COUNT][(depth + 1) * (width + 1)];
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                Animal animal = field.getObjectAt(row, col);
+                if (animal != null && animal.isAlive()) {
+                    add(Species.indexOf(animal), row, col, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the count of a species at one cell.
+     * @param species The species number (see Species).
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param delta How much to change the count by.
+     */
+    public void add(int species, int row, int col, int delta) {
+        int[] tree = trees[species];
+        for (int i = row + 1; i <= depth; i += i & -i) {
+            for (int j = col + 1; j <= width; j += j & -j) {
+                tree[i * (width + 1) + j] += delta;
+            }
+        }
+    }
+
+    /**
+     * Counts the animals of a species in a rectangle of cells.
+     * @param species The species number (see Species).
+     * @param top The first row of the rectangle.
+     * @param left The first column of the rectangle.
+     * @param bottom The last row of the rectangle.
+     * @param right The last column of the rectangle.
+     * @return The number of animals of that species in the rectangle.
+     */
+    public int count(int species, int top, int left, int bottom, int right) {
+        return prefix(species, bottom + 1, right + 1) - prefix(species, top, right + 1)
+               - prefix(species, bottom + 1, left) + prefix(species, top, left);
+    }
+
+    /**
+     * Empties the trees.
+     */
+    public void clear() {
+        for (int[] tree : trees) {
+            Arrays.fill(tree, 0);
+        }
+    }
+
+    /**
+     * @return The count of a species over rows below rows and columns below cols.
+     */
+    private int prefix(int species, int rows, int cols) {
+        int[] tree = trees[species];
+        int total = 0;
+        for (int i = rows; i > 0; i -= i & -i) {
+            for (int j = cols; j > 0; j -= j & -j) {
+                total += tree[i * (width + 1) + j];
+            }
+        }
+        return total;
+    }
+}
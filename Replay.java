@@ -0,0 +1,50 @@
+/**
+ * Re-executes a recorded simulation run from its replay log and checks
+ * the field against the recorded hashes as it goes, so that a replay
+ * that drifts from the original is caught at the exact step.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class Replay {
+
+    /**
+     * Replays the run described by the log.
+     * @param log The log of the original run.
+     * @return The first tick whose hash did not match, or -1 if the
+     *         replay matched the original throughout.
+     */
+    public static int verify(ReplayLog log) {
+        Randomizer.setSeed(log.getSeed());
+        Simulator simulator = new Simulator(log.getDepth(), log.getWidth());
+
+        for (int r = 0; r < log.resetsAt(0); r++) {
+            simulator.reset();
+        }
+        for (int tick = 1; tick <= log.getTicks(); tick++) {
+            simulator.simulateOneStep();
+
+            Long expected = log.getHash(tick);
+            if (expected != null && expected != simulator.getField().stateHash()) {
+                return tick;
+            }
+            for (int r = 0; r < log.resetsAt(tick); r++) {
+                simulator.reset();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replays a log file from the command line.
+     * @param args The name of the replay log file.
+     */
+    public static void main(String[] args) throws Exception {
+        int divergence = verify(ReplayLog.load(args[0]));
+        if (divergence < 0) {
+            System.out.println("Replay matched the original run.");
+        }
+        else {
+            System.out.println("Replay diverged at step " + divergence);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A record of a simulation run that is small enough to keep on disk and
+ * complete enough to re-execute the run exactly: the master seed, the
+ * field size, every reset made from outside the simulator, and a hash of
+ * the field taken every few steps so a replay can check it is still on track.
+ *
+ * Steps are counted as ticks since the log was started, so they keep
+ * counting across resets.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class ReplayLog {
+
+    private long seed;
+    private int depth, width;
+    private int hashInterval;
+    private int ticks;
+    private List<Integer> resets;
+    private TreeMap<Integer, Long> hashes;
+
+    /**
+     * Starts a new, empty log for a run.
+     * @param seed The master seed the run was started with.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param hashInterval How many steps between state hashes.
+     */
+    public ReplayLog(long seed, int depth, int width, int hashInterval) {
+        this.seed = seed;
+        this.depth = depth;
+        this.width = width;
+        this.hashInterval = hashInterval;
+        ticks = 0;
+        resets = new ArrayList<>();
+        hashes = new TreeMap<>();
+    }
+
+    /**
+     * Records that a step has been completed, hashing the field if
+     * this is one of the checkpoint steps.
+     * @param field The field after the step.
+     */
+    public void stepCompleted(Field field) {
+        ticks++;
+        if (ticks % hashInterval == 0) {
+            hashes.put(ticks, field.stateHash());
+        }
+    }
+
+    /**
+     * Records that the simulation was reset after the current tick.
+     */
+    public void recordReset() {
+        resets.add(ticks);
+    }
+
+    /**
+     * @param tick A tick number.
+     * @return The number of resets made after the given tick.
+     */
+    public int resetsAt(int tick) {
+        int count = 0;
+        for (int reset : resets) {
+            if (reset == tick) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param tick A tick number.
+     * @return The recorded hash for that tick, or null if none was taken.
+     */
+    public Long getHash(int tick) {
+        return hashes.get(tick);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Writes the log to a text file.
+     * @param fileName The file to write to.
+     */
+    public void save(String fileName) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+            out.println("seed " + seed);
+            out.println("field " + depth + " " + width);
+            out.println("interval " + hashInterval);
+            out.println("ticks " + ticks);
+            for (int reset : resets) {
+                out.println("reset " + reset);
+            }
+            for (int tick : hashes.keySet()) {
+                out.println("hash " + tick + " " + Long.toHexString(hashes.get(tick)));
+            }
+        }
+    }
+
+    /**
+     * Reads a log previously written by save.
+     * @param fileName The file to read from.
+     * @return The log that was read.
+     */
+    public static ReplayLog load(String fileName) throws IOException {
+        ReplayLog log = new ReplayLog(0, 0, 0, 1);
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                switch (parts[0]) {
+                    case "seed":
+                        log.seed = Long.parseLong(parts[1]);
+                        break;
+                    case "field":
+                        log.depth = Integer.parseInt(parts[1]);
+                        log.width = Integer.parseInt(parts[2]);
+                        break;
+                    case "interval":
+                        log.hashInterval = Integer.parseInt(parts[1]);
+                        break;
+                    case "ticks":
+                        log.ticks = Integer.parseInt(parts[1]);
+                        break;
+                    case "reset":
+                        log.resets.add(Integer.parseInt(parts[1]));
+                        break;
+                    case "hash":
+                        log.hashes.put(Integer.parseInt(parts[1]), Long.parseUnsignedLong(parts[2], 16));
+                        break;
+                    default:
+                        throw new IOException("Unknown replay log entry: " + line);
+                }
+            }
+        }
+        return log;
+    }
+}
@@ -0,0 +1,352 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the results of finished runs on disk, so that running the same
+ * configuration again returns at once instead of simulating it again.
+ *
+ * Each result is stored under a hash of everything that decides it: the
+ * seed, field size, number of steps, and every class file the simulation
+ * was loaded from. Changing any of these, including editing and
+ * recompiling the simulation, gives a different key, so stale results
+ * are never returned. A run does not depend on other simulations in the
+ * same program (see HeadlessRunner), so any run may be stored.
+ *
+ * A result holds the population of each species at each step and the
+ * final world, saved as a WorldTemplate.
+ *
+ * When the cache grows past its size limit, the results used least
+ * recently are deleted. Reading a result marks it as used by updating
+ * its modification time, so the order survives between programs.
+ *
+ * The cache lives in ~/.gameoflife/results unless -Dcache.dir says
+ * otherwise, is limited to -Dcache.maxBytes (1 GB by default), and can
+ * be turned off with -Dcache=false.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class ResultCache {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("cache", "true"));
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String POPULATIONS = "populations.bin";
+    private static final String FINAL_WORLD = "final.world";
+    private static ResultCache defaultCache;
+    private static String codeVersion;
+
+    private final Path dir;
+    private final long maxBytes;
+
+    /**
+     * A result read from the cache.
+     */
+    public static class Result {
+        private final int[][] populations;
+        private final Path finalWorld;
+
+        private Result(int[][] populations, Path finalWorld) {
+            this.populations = populations;
+            this.finalWorld = finalWorld;
+        }
+
+        /**
+         * @return The population of each species, indexed by step then species.
+         */
+        public int[][] getPopulations() {
+            return populations;
+        }
+
+        /**
+         * @return The world as it was after the last step, opened; the
+         *         caller must close it when done.
+         */
+        public WorldTemplate getFinalWorld() throws IOException {
+            return WorldTemplate.open(finalWorld);
+        }
+    }
+
+    /**
+     * Opens (creating if needed) a cache in the given directory.
+     * @param dir The directory to keep results in.
+     * @param maxBytes The most space the results may take.
+     */
+    public ResultCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * @return The cache set up by the system properties, or null if caching is off.
+     */
+    public static synchronized ResultCache getDefault() throws IOException {
+        if (!ENABLED) {
+            return null;
+        }
+        if (defaultCache == null) {
+            Path home = Paths.get(System.getProperty("user.home"), ".gameoflife", "results");
+            Path dir = Paths.get(System.getProperty("cache.dir", home.toString()));
+            defaultCache = new ResultCache(dir, Long.getLong("cache.maxBytes", DEFAULT_MAX_BYTES));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Works out the key of a run.
+     * @param seed The run's seed.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param steps The number of steps run.
+     * @return The key, as hex digits.
+     * @throws IOException If the simulation's class files cannot be read.
+     */
+    public static String key(long seed, int depth, int width, int steps) throws IOException {
+        String config = "format=" + FORMAT_VERSION + ";seed=" + seed + ";depth=" + depth + ";width=" + width
+                        + ";steps=" + steps + ";code=" + getCodeVersion();
+        return hex(sha256().digest(config.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Looks up a result.
+     * @param key The key of the run.
+     * @return The result, or null if it is not in the cache.
+     */
+    public Result get(String key) throws IOException {
+        Path entry = dir.resolve(key);
+        Path populationsFile = entry.resolve(POPULATIONS);
+        Path worldFile = entry.resolve(FINAL_WORLD);
+        if (!Files.exists(populationsFile) || !Files.exists(worldFile)) {
+            return null;
+        }
+        int[][] populations;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(populationsFile)))) {
+            populations = new int[in.readInt()][in.readInt()];
+            for (int[] counts : populations) {
+                for (int species = 0; species < counts.length; species++) {
+                    counts[species] = in.readInt();
+                }
+            }
+        }
+        catch (IOException e) {
+            // Deleted by another program since we looked; treat it as missing.
+            return null;
+        }
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return new Result(populations, worldFile);
+    }
+
+    /**
+     * Stores a result, then deletes the results used least recently if
+     * the cache has grown too big.
+     * @param key The key of the run.
+     * @param populations The population of each species, indexed by step then species.
+     * @param field The field after the last step.
+     * @param seed The run's seed.
+     */
+    public void put(String key, int[][] populations, Field field, long seed) throws IOException {
+        // Write into a new directory and rename it into place, so other
+        // programs never see a half-written result.
+        Path temp = Files.createTempDirectory(dir, key + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(temp.resolve(POPULATIONS))))) {
+                out.writeInt(populations.length);
+                out.writeInt(populations.length == 0 ? 0 : populations[0].length);
+                for (int[] counts : populations) {
+                    for (int count : counts) {
+                        out.writeInt(count);
+                    }
+                }
+            }
+            WorldTemplate.save(field, seed, temp.resolve(FINAL_WORLD));
+            Files.move(temp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            if (!Files.isDirectory(dir.resolve(key))) {
+                throw e;
+            }
+            // Another run stored the same result first.
+        }
+        finally {
+            deleteTree(temp);
+        }
+        evict();
+    }
+
+    /**
+     * @return The space all the results take.
+     */
+    public long size() throws IOException {
+        long total = 0;
+        for (Path entry : entries()) {
+            total += sizeOf(entry);
+        }
+        return total;
+    }
+
+    /**
+     * Deletes the results used least recently until the cache fits its limit.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> entries = entries();
+        List<Long> sizes = new ArrayList<>();
+        List<FileTime> used = new ArrayList<>();
+        long total = 0;
+        for (Path entry : entries) {
+            long size = sizeOf(entry);
+            sizes.add(size);
+            used.add(Files.getLastModifiedTime(entry));
+            total += size;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(used::get));
+        for (int i : order) {
+            if (total <= maxBytes) {
+                break;
+            }
+            deleteTree(entries.get(i));
+            total -= sizes.get(i);
+        }
+    }
+
+    /**
+     * @return Every stored result, leaving out ones still being written.
+     */
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                if (Files.isDirectory(entry) && !entry.getFileName().toString().contains(".tmp")) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return The space the files in a directory take.
+     */
+    private static long sizeOf(Path entry) throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(entry)) {
+            for (Path file : stream) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Deletes a directory and everything in it, if it exists.
+     */
+    private static void deleteTree(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return A hash of every class file the simulation was loaded from,
+     *         including nested and anonymous classes.
+     */
+    private static synchronized String getCodeVersion() throws IOException {
+        if (codeVersion == null) {
+            MessageDigest digest = sha256();
+            Path location;
+            try {
+                location = Paths.get(Simulator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            }
+            catch (URISyntaxException | NullPointerException e) {
+                throw new IOException("Cannot find the simulation's class files", e);
+            }
+            if (Files.isDirectory(location)) {
+                List<Path> classes;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classes = files.filter(file -> file.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path file : classes) {
+                    digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+            else {
+                try (JarFile jar = new JarFile(location.toFile())) {
+                    List<JarEntry> classes = new ArrayList<>();
+                    for (JarEntry entry : Collections.list(jar.entries())) {
+                        if (entry.getName().endsWith(".class")) {
+                            classes.add(entry);
+                        }
+                    }
+                    classes.sort(Comparator.comparing(JarEntry::getName));
+                    for (JarEntry entry : classes) {
+                        digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            digest.update(in.readAllBytes());
+                        }
+                    }
+                }
+            }
+            codeVersion = hex(digest.digest());
+        }
+        return codeVersion;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder();
+        for (byte b : bytes) {
+            text.append(String.format("%02x", b));
+        }
+        return text.toString();
+    }
+}
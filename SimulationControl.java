@@ -0,0 +1,144 @@
+/**
+ * Lets a running simulation be paused, slowed down, sped up and
+ * checkpointed from outside (see SimulationControlMBean), and keeps the
+ * step rate and step times that MetricsEndpoint reports.
+ *
+ * The simulation loop calls awaitNextStep() before each step and
+ * stepCompleted() after it; other threads only set flags that the loop
+ * picks up between steps.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class SimulationControl implements SimulationControlMBean {
+
+    public static final int DEFAULT_STEP_DELAY = 100;
+    private static final long RATE_WINDOW = 1_000_000_000L;
+
+    private volatile boolean paused;
+    private StepPacer pacer = new StepPacer(1000.0 / DEFAULT_STEP_DELAY);
+    private boolean checkpointWanted;
+    private volatile int[] populations = new int[Species.COUNT];
+    private LatencyHistogram stepTimes = new LatencyHistogram();
+    private long steps;
+    private double stepsPerSecond;
+    private long windowStart = System.nanoTime();
+    private long windowSteps;
+
+    @Override
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    @Override
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public int getStepDelay() {
+        return pacer.getMode() == StepPacer.TARGET_RATE ? (int) Math.round(1000 / pacer.getTargetRate()) : 0;
+    }
+
+    @Override
+    public void setStepDelay(int millis) {
+        if (millis <= 0) {
+            pacer.setMaxSpeed();
+        }
+        else {
+            pacer.setTargetRate(1000.0 / millis);
+        }
+    }
+
+    @Override
+    public void fastForward(int steps) {
+        pacer.fastForward(steps);
+    }
+
+    /**
+     * @return The pacer that sets how fast the simulation runs.
+     */
+    public StepPacer getPacer() {
+        return pacer;
+    }
+
+    @Override
+    public synchronized void checkpoint() {
+        checkpointWanted = true;
+    }
+
+    @Override
+    public synchronized long getSteps() {
+        return steps;
+    }
+
+    @Override
+    public synchronized double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    /**
+     * Waits while the simulation is paused, then until the pacer says the
+     * next step is due.
+     */
+    public void awaitNextStep() throws InterruptedException {
+        synchronized (this) {
+            while (paused) {
+                wait();
+            }
+        }
+        pacer.awaitNextStep();
+    }
+
+    /**
+     * Records that a step has been simulated.
+     * @param nanos How long the step took.
+     */
+    public synchronized void stepCompleted(long nanos) {
+        steps++;
+        stepTimes.record(nanos);
+        windowSteps++;
+        long now = System.nanoTime();
+        if (now - windowStart >= RATE_WINDOW) {
+            stepsPerSecond = windowSteps * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowSteps = 0;
+        }
+    }
+
+    /**
+     * @return Whether a checkpoint was asked for since this was last called.
+     */
+    public synchronized boolean takeCheckpointRequest() {
+        boolean wanted = checkpointWanted;
+        checkpointWanted = false;
+        return wanted;
+    }
+
+    /**
+     * @param percentile From 0 to 100.
+     * @return The step time below which that percentage of steps took, in nanoseconds.
+     */
+    public synchronized long getStepTime(double percentile) {
+        return stepTimes.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @param speciesCounts The latest population of each species, by species number.
+     */
+    public void setPopulations(int[] speciesCounts) {
+        populations = speciesCounts.clone();
+    }
+
+    /**
+     * @return The latest population of each species, by species number.
+     */
+    public int[] getPopulations() {
+        return populations;
+    }
+}
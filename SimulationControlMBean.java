@@ -0,0 +1,57 @@
+/**
+ * What can be seen and changed of a running simulation over JMX, e.g.
+ * from JConsole or VisualVM, without stopping it.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public interface SimulationControlMBean {
+
+    /**
+     * Stops the simulation after the current step, until resume() is called.
+     */
+    void pause();
+
+    /**
+     * Carries on after pause().
+     */
+    void resume();
+
+    /**
+     * @return Whether the simulation is paused.
+     */
+    boolean isPaused();
+
+    /**
+     * @return The time from the start of one step to the start of the
+     *         next, in milliseconds, or 0 when running flat out.
+     */
+    int getStepDelay();
+
+    /**
+     * @param millis The time from the start of one step to the start of
+     *        the next, in milliseconds; 0 runs as fast as possible.
+     */
+    void setStepDelay(int millis);
+
+    /**
+     * Runs the given number of steps as fast as possible, then goes back
+     * to the pace before.
+     * @param steps How many steps to fast-forward.
+     */
+    void fastForward(int steps);
+
+    /**
+     * Asks for the run's state to be saved after the current step.
+     */
+    void checkpoint();
+
+    /**
+     * @return The number of steps simulated.
+     */
+    long getSteps();
+
+    /**
+     * @return The number of steps simulated per second, over the last second or so.
+     */
+    double getStepsPerSecond();
+}
@@ -0,0 +1,88 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the simulation, so that a recording
+ * lines up CPU samples and GC pauses with the steps they happened in.
+ * They cost next to nothing unless a recording is running, e.g.
+ * java -XX:StartFlightRecording=filename=run.jfr SimulatorView
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class SimulationEvents {
+
+    /**
+     * One simulation step, from start to finish.
+     */
+    @Name("simulation.Step")
+    @Label("Simulation Step")
+    @Category("Simulation")
+    public static class Step extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Population Before")
+        @Description("Animals and plants in the simulation when the step started")
+        int populationBefore;
+
+        @Label("Population")
+        @Description("Animals and plants in the simulation when the step finished")
+        int population;
+
+        @Label("Births")
+        int births;
+
+        @Label("Deaths")
+        int deaths;
+    }
+
+    /**
+     * A step in which a large share of the population died.
+     */
+    @Name("simulation.MassDeath")
+    @Label("Mass Death")
+    @Category("Simulation")
+    public static class MassDeath extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Deaths")
+        int deaths;
+
+        @Label("Population Before")
+        int populationBefore;
+    }
+
+    /**
+     * Saving the state of a run to disk, such as its replay log.
+     */
+    @Name("simulation.Checkpoint")
+    @Label("Checkpoint Write")
+    @Category("Simulation")
+    public static class Checkpoint extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Drawing one frame of the field in the window.
+     */
+    @Name("simulation.RenderFrame")
+    @Label("Render Frame")
+    @Category("Simulation")
+    public static class RenderFrame extends Event {
+        @Label("Step")
+        int step;
+    }
+}
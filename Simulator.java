@@ -2,6 +2,7 @@ import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Arrays;
 import javafx.scene.paint.Color; 
 
 /**
@@ -12,15 +13,25 @@ import javafx.scene.paint.Color;
  */
 public class Simulator {
 
-    private static final double CAPYBARA_CREATION_PROBABILITY = 0.10;
-    private static final double JAGUAR_CREATION_PROBABILITY = 0.020;
-    private static final double DEER_CREATION_PROBABILITY = 0.15;
-    private static final double SQUIRREL_CREATION_PROBABILITY = 0.05;
-    private static final double CROCODILE_CREATION_PROBABILITY = 0.015;
+    static final double CAPYBARA_CREATION_PROBABILITY = 0.10;
+    static final double JAGUAR_CREATION_PROBABILITY = 0.020;
+    static final double DEER_CREATION_PROBABILITY = 0.15;
+    static final double SQUIRREL_CREATION_PROBABILITY = 0.05;
+    static final double CROCODILE_CREATION_PROBABILITY = 0.015;
+    // How often (in steps) to check whether the animals need re-sorting.
+    private static final int SORT_CHECK_INTERVAL = 10;
+    // A step in which more than this share of the population dies is reported as a mass death.
+    private static final double MASS_DEATH_FRACTION = 0.2;
     
     private List<Animal> animals;
     private Field field;
     private int step;
+    private ReplayLog replayLog;
+    private FrameExporter frameExporter;
+    private FieldStreamServer streamServer;
+    private boolean speciesBatched;
+    private List<List<Animal>> buckets;
+    private int[] bucketOrder;
     
     /**
      * Creates a simulation field with the given size.
@@ -28,11 +39,38 @@ public class Simulator {
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width) {
-        
+        this(depth, width, null);
+    }
+
+    /**
+     * Creates a simulation starting from the world saved in a template,
+     * instead of a randomly populated one.
+     * @param template The template to start from.
+     */
+    public Simulator(WorldTemplate template) {
+        this(template.getDepth(), template.getWidth(), template);
+    }
+
+    /**
+     * Creates a simulation field with the given size, populated randomly
+     * or from a template.
+     */
+    private Simulator(int depth, int width, WorldTemplate template) {
         animals = new ArrayList<>();
         field = new Field(depth, width);
+        buckets = new ArrayList<>();
+        bucketOrder = new int[Species.COUNT];
+        for (int species = 0; species < Species.COUNT; species++) {
+            buckets.add(new ArrayList<>());
+            bucketOrder[species] = species;
+        }
 
-        reset();
+        if (template == null) {
+            reset();
+        }
+        else {
+            reset(template);
+        }
     }
     
     /**
@@ -40,20 +78,176 @@ public class Simulator {
      * Iterate over the whole field updating the state of each animal.
      */
     public void simulateOneStep() {
+        StepMetrics.stepStarted();
+        SimulationEvents.Step event = new SimulationEvents.Step();
+        event.begin();
         step++;
+        field.getLineage().setStep(step);
+        field.getIndex().newStep();
+        field.takeDeaths();
+        int populationBefore = animals.size();
         List<Animal> newAnimals = new ArrayList<>();   
 
-        for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-            Animal animal = it.next();
-            animal.act(newAnimals);
-            if(! animal.isAlive()) {
-                it.remove();
+        if (speciesBatched) {
+            actBySpecies(newAnimals);
+        }
+        else {
+            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
+                Animal animal = it.next();
+                animal.act(newAnimals);
+                if(! animal.isAlive()) {
+                    it.remove();
+                    field.getPool().release(animal);
+                }
             }
         }
-               
+
+        long time = StepMetrics.start();
+        field.getEpidemic().step();
+        time = StepMetrics.lap(StepMetrics.DISEASE, time);
+        field.getActivity().step();
+        
         updatePlantPopulation(field.getPlant());
+        time = StepMetrics.lap(StepMetrics.PLANTS, time);
+        // Every death this step, in any phase, including plants eaten or trampled.
+        int deaths = field.takeDeaths();
         
         animals.addAll(newAnimals);
+
+        // Keep the animals in spatial order so neighbouring animals are
+        // processed together.
+        if (step % SORT_CHECK_INTERVAL == 0) {
+            MortonOrder.sortIfDisordered(animals);
+        }
+
+        if (replayLog != null) {
+            replayLog.stepCompleted(field);
+        }
+        if (frameExporter != null) {
+            frameExporter.stepCompleted(step, field);
+        }
+        if (streamServer != null) {
+            streamServer.stepCompleted(step, field);
+        }
+        StepMetrics.lap(StepMetrics.BOOKKEEPING, time);
+        StepMetrics.stepFinished();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.step = step;
+            event.populationBefore = populationBefore;
+            event.population = animals.size();
+            event.births = newAnimals.size();
+            event.deaths = deaths;
+            event.commit();
+        }
+        if (deaths > populationBefore * MASS_DEATH_FRACTION) {
+            SimulationEvents.MassDeath massDeath = new SimulationEvents.MassDeath();
+            if (massDeath.isEnabled()) {
+                massDeath.step = step;
+                massDeath.deaths = deaths;
+                massDeath.populationBefore = populationBefore;
+                massDeath.commit();
+            }
+        }
+    }
+    
+    /**
+     * Makes every animal act, one species at a time. The species go in a
+     * fresh random order each step so no species always moves first.
+     *
+     * Each species has its own loop on purpose: a loop only ever sees one
+     * class of animal, so the JIT can inline that class's act() there,
+     * which it cannot do for a single loop over all six classes.
+     * @param newAnimals A list to receive newly born animals.
+     */
+    private void actBySpecies(List<Animal> newAnimals) {
+        for (List<Animal> bucket : buckets) {
+            bucket.clear();
+        }
+        for (Animal animal : animals) {
+            buckets.get(Species.indexOf(animal)).add(animal);
+        }
+
+        Random rand = Randomizer.getRandom();
+        for (int i = bucketOrder.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int swap = bucketOrder[i];
+            bucketOrder[i] = bucketOrder[j];
+            bucketOrder[j] = swap;
+        }
+
+        for (int species : bucketOrder) {
+            List<Animal> bucket = buckets.get(species);
+            switch (species) {
+                case Species.PLANT:
+                    for (Animal plant : bucket) {
+                        plant.act(newAnimals);
+                    }
+                    break;
+                case Species.DEER:
+                    for (Animal deer : bucket) {
+                        deer.act(newAnimals);
+                    }
+                    break;
+                case Species.CAPYBARA:
+                    for (Animal capybara : bucket) {
+                        capybara.act(newAnimals);
+                    }
+                    break;
+                case Species.SQUIRREL:
+                    for (Animal squirrel : bucket) {
+                        squirrel.act(newAnimals);
+                    }
+                    break;
+                case Species.JAGUAR:
+                    for (Animal jaguar : bucket) {
+                        jaguar.act(newAnimals);
+                    }
+                    break;
+                case Species.CROCODILE:
+                    for (Animal crocodile : bucket) {
+                        crocodile.act(newAnimals);
+                    }
+                    break;
+            }
+        }
+
+        // Rebuild the animal list from the survivors, keeping the
+        // original order within each species.
+        animals.clear();
+        for (List<Animal> bucket : buckets) {
+            for (Animal animal : bucket) {
+                if (animal.isAlive()) {
+                    animals.add(animal);
+                }
+                else {
+                    field.getPool().release(animal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the living animals of each species.
+     * @param counts Receives the count for each species (see Species).
+     */
+    public void countSpecies(int[] counts) {
+        Arrays.fill(counts, 0);
+        for (Animal animal : animals) {
+            if (animal.isAlive()) {
+                counts[Species.indexOf(animal)]++;
+            }
+        }
+    }
+
+    /**
+     * Chooses whether animals act species by species (see actBySpecies)
+     * or all together in list order.
+     * @param batched true to act species by species.
+     */
+    public void setSpeciesBatched(boolean batched) {
+        speciesBatched = batched;
     }
     
     /**
@@ -71,53 +265,59 @@ public class Simulator {
      * Resets the simulation to a starting position.
      */
     public void reset() {
+        if (replayLog != null) {
+            replayLog.recordReset();
+        }
         step = 0;
         animals.clear();
         populate();
     }
     
     /**
-     * Randomly populates the field with animals.
+     * Resets the simulation to the world saved in a template. Runs started
+     * this way cannot be replayed from a ReplayLog, which only knows how
+     * to populate a field from its seed.
+     * @param template A template of the same size as the field.
+     */
+    public void reset(WorldTemplate template) {
+        step = 0;
+        animals.clear();
+        field.clear();
+        template.copyInto(field, animals);
+    }
+    
+    /**
+     * Randomly populates the field with animals. Which cells hold which
+     * animals, and their genes, ages and sexes, are chosen by a
+     * WorldPopulator, tile by tile in parallel, from a seed drawn from the
+     * simulation's generator; every other cell holds a plant.
      */
     private void populate() {
         Random rand = Randomizer.getRandom();
         field.clear();
-        
+        AgentRecords records = WorldPopulator.populate(field.getDepth(), field.getWidth(), rand.nextLong());
+
+        AgentPool pool = field.getPool();
+        for (int i = 0; i < records.size(); i++) {
+            int species = records.getSpecies(i);
+            Location location = new Location(records.getRow(i), records.getCol(i));
+            String sex = (records.getFlags(i) & AgentRecords.MALE) != 0 ? "Male" : "Female";
+            String gene = AgentRecords.decodeGene(records.getGenome(i));
+            Animal animal = pool.obtain(species, field, location, Species.getColor(species), sex, gene);
+            animal.restoreState(records.getAge(i), records.getFoodLevel(i));
+        }
+
+        // List everything in row order, as the animals were placed in tile order.
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= CROCODILE_CREATION_PROBABILITY) {
+                Animal animal = field.getObjectAt(row, col);
+                if(animal == null) {
                     Location location = new Location(row, col);
-                    Crocodile crocodile = new Crocodile(true, field, location, Color.DARKGREEN, Animal.getSex(), true, null);
-                    animals.add(crocodile);
-                }
-                else if(rand.nextDouble() <= JAGUAR_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Jaguar jaguar = new Jaguar(true, field, location, Color.GOLD, Animal.getSex(), true, null);
-                    animals.add(jaguar);
-                }
-                else if(rand.nextDouble() <= CAPYBARA_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Capybara capybara = new Capybara(true, field, location, Color.SADDLEBROWN, Animal.getSex(), true, null);
-                    animals.add(capybara);
-                }
-                else if(rand.nextDouble() <= DEER_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Deer deer = new Deer(true, field, location, Color.PERU, Animal.getSex(), true, null);
-                    animals.add(deer);
-                }
-                else if(rand.nextDouble() <= SQUIRREL_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Squirrel squirrel = new Squirrel(true, field, location, Color.DIMGRAY, Animal.getSex(), true, null);
-                    animals.add(squirrel);
-                }
-                else{
-                    Location location = new Location(row, col);
-                    Plant plant = new Plant(field, location, Color.FORESTGREEN, null, false, null);
-                    animals.add(plant);
+                    animal = new Plant(field, location, Color.FORESTGREEN, null, false, null);
                 }
+                animals.add(animal);
             }
         }
-
     }
     
     /**
@@ -133,6 +333,30 @@ public class Simulator {
         }
     }
     
+    /**
+     * Starts recording this run into the given replay log.
+     * @param log The log to record steps and resets into.
+     */
+    public void setReplayLog(ReplayLog log) {
+        replayLog = log;
+    }
+
+    /**
+     * Exports a picture of the field every so many steps.
+     * @param exporter The exporter to hand each completed step to.
+     */
+    public void setFrameExporter(FrameExporter exporter) {
+        frameExporter = exporter;
+    }
+
+    /**
+     * Streams the field to remote viewers as it changes.
+     * @param server The server to hand each completed step to.
+     */
+    public void setStreamServer(FieldStreamServer server) {
+        streamServer = server;
+    }
+
     public Field getField() {
         return field;
     }
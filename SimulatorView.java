@@ -1,6 +1,9 @@
 import javafx.application.Application;
-import javafx.application.Platform;
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
 import javafx.scene.Group; 
 import javafx.scene.layout.BorderPane; 
 import javafx.scene.layout.HBox; 
@@ -14,6 +17,11 @@ import javafx.geometry.Pos;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.geometry.Insets;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
 
 /**
  * A graphical view of the simulation grid. The view displays a rectangle for
@@ -27,18 +35,40 @@ public class SimulatorView extends Application {
     public static final int GRID_HEIGHT = 80;    
     public static final int WIN_WIDTH = 650;
     public static final int WIN_HEIGHT = 650;  
+    public static final int CHART_HEIGHT = 100;
     
-    private static final Color EMPTY_COLOR = Color.WHITE;
     private static final Color PLANT_COLOR = Color.GREEN;
+    private static final String REPLAY_FILE = "replay.log";
+    private static final int REPLAY_HASH_INTERVAL = 10;
+    private static final double ZOOM_STEP = 1.25;
+    private static final String CONTROL_MBEAN_NAME = "simulation:type=SimulationControl";
+    // Target rates offered, in steps per second; the first is the starting pace.
+    private static final int[] SPEEDS = {10, 30, 100};
+    private static final int FAST_FORWARD_STEPS = 1000;
 
     private final String GENERATION_PREFIX = "Generation: ";
     private final String POPULATION_PREFIX = "Population: ";
+    private final String RATE_PREFIX = "Steps/s: ";
 
-    private Label genLabel, population, infoLabel;
+    private Label genLabel, rateLabel, population, infoLabel;
+    private ChoiceBox<String> overlayChoice, speedChoice;
+    private int lastDrawnStep = -1;
 
     private FieldCanvas fieldCanvas;
     private FieldStats stats;
+    private PopulationChart chart;
+    // Recorded on the simulation thread, and copied to be drawn.
+    private PopulationHistory history, shownHistory;
+    // Filled on the simulation thread, for the history.
+    private int[] stepCounts = new int[Species.COUNT];
+    // What is drawn, copied from the field under the simulator's lock.
+    private FieldSnapshot snapshot = new FieldSnapshot();
     private Simulator simulator;
+    private SimulationControl control;
+    private ReplayLog replayLog;
+    private int selectRow, selectCol, selectEndRow, selectEndCol;
+    private boolean selecting;
+    private double panX, panY;
 
     /**
      * Create a view of the given width and height.
@@ -49,9 +79,17 @@ public class SimulatorView extends Application {
     public void start(Stage stage) {
                 
         stats = new FieldStats();
+        history = new PopulationHistory(WIN_WIDTH - 50);
+        shownHistory = new PopulationHistory(WIN_WIDTH - 50);
+        chart = new PopulationChart(WIN_WIDTH - 50, CHART_HEIGHT);
         fieldCanvas = new FieldCanvas(WIN_WIDTH - 50, WIN_HEIGHT - 50);
         fieldCanvas.setScale(GRID_HEIGHT, GRID_WIDTH); 
         simulator = new Simulator(GRID_HEIGHT, GRID_WIDTH);
+        replayLog = new ReplayLog(Randomizer.getSeed(), GRID_HEIGHT, GRID_WIDTH, REPLAY_HASH_INTERVAL);
+        control = new SimulationControl();
+        startMonitoring();
+        simulator.setReplayLog(replayLog);
+        recordPopulations();
 
         Group root = new Group();
         
@@ -64,11 +102,66 @@ public class SimulatorView extends Application {
         HBox popPane = new HBox();
         
 
+        overlayChoice = new ChoiceBox<>();
+        overlayChoice.getItems().add("No overlay");
+        for (int kind = 0; kind < ActivityMap.KINDS; kind++) {
+            overlayChoice.getItems().add(ActivityMap.getName(kind));
+        }
+        overlayChoice.getSelectionModel().selectFirst();
+        overlayChoice.setOnAction(e -> redraw());
+
+        speedChoice = new ChoiceBox<>();
+        for (int rate : SPEEDS) {
+            speedChoice.getItems().add(rate + " steps/s");
+        }
+        speedChoice.getItems().add("Max speed");
+        speedChoice.getSelectionModel().selectFirst();
+        speedChoice.setOnAction(e -> {
+            int choice = speedChoice.getSelectionModel().getSelectedIndex();
+            if (choice < SPEEDS.length) {
+                control.getPacer().setTargetRate(SPEEDS[choice]);
+            }
+            else {
+                control.getPacer().setMaxSpeed();
+            }
+        });
+        Button fastForward = new Button("Skip " + FAST_FORWARD_STEPS);
+        fastForward.setOnAction(e -> control.fastForward(FAST_FORWARD_STEPS));
+        rateLabel = new Label(RATE_PREFIX);
+
         infoPane.setSpacing(10);
-        infoPane.getChildren().addAll(genLabel, infoLabel);       
+        infoPane.getChildren().addAll(overlayChoice, speedChoice, fastForward, genLabel, rateLabel, infoLabel);       
         popPane.getChildren().addAll(population); 
         
         bPane.setTop(infoPane);
+        // Left drag selects a region, right drag pans and the wheel zooms.
+        fieldCanvas.setOnMousePressed(e -> {
+            if (e.getButton() == MouseButton.SECONDARY) {
+                panX = e.getX();
+                panY = e.getY();
+                return;
+            }
+            selectRow = selectEndRow = clampRow(fieldCanvas.toRow(e.getY()));
+            selectCol = selectEndCol = clampCol(fieldCanvas.toCol(e.getX()));
+            selecting = true;
+            redraw();
+        });
+        fieldCanvas.setOnMouseDragged(e -> {
+            if (e.getButton() == MouseButton.SECONDARY) {
+                fieldCanvas.pan(e.getX() - panX, e.getY() - panY);
+                panX = e.getX();
+                panY = e.getY();
+            }
+            else {
+                selectEndRow = clampRow(fieldCanvas.toRow(e.getY()));
+                selectEndCol = clampCol(fieldCanvas.toCol(e.getX()));
+            }
+            redraw();
+        });
+        fieldCanvas.setOnScroll(e -> {
+            fieldCanvas.zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), e.getY());
+            redraw();
+        });
         StackPane canvasWrapper = new StackPane(fieldCanvas);
         bPane.setCenter(canvasWrapper);
 
@@ -82,19 +175,46 @@ public class SimulatorView extends Application {
         HBox legendBox = createLegend();
         legendBox.setAlignment(Pos.BASELINE_LEFT);
         
-        bottomBox.getChildren().addAll(popBox, legendBox);
+        bottomBox.getChildren().addAll(chart, popBox, legendBox);
         bPane.setBottom(bottomBox);
         
         root.getChildren().add(bPane);
-        Scene scene = new Scene(root, WIN_WIDTH, WIN_HEIGHT); 
+        Scene scene = new Scene(root, WIN_WIDTH, WIN_HEIGHT + CHART_HEIGHT); 
         
         stage.setScene(scene);          
         stage.setTitle("Predator/Prey Simulation");
-        updateCanvas(simulator.getStep(), simulator.getField());
+        redraw();
         
         Field field = simulator.getField();
         
         stage.show();     
+
+        // Draw at the display's refresh rate, whenever a new step is ready,
+        // however fast or slow the simulation itself is running.
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (simulator.getStep() != lastDrawnStep) {
+                    redraw();
+                }
+                rateLabel.setText(String.format("%s%.0f", RATE_PREFIX, control.getStepsPerSecond()));
+            }
+        }.start();
+    }
+
+    /**
+     * Draws the latest step. Only copying it holds the simulator's lock,
+     * making sure it is not half way through being simulated; the drawing
+     * is done from the copy while the simulation goes on.
+     */
+    private void redraw() {
+        int overlay = overlayChoice.getSelectionModel().getSelectedIndex() - 1;
+        synchronized (simulator) {
+            lastDrawnStep = simulator.getStep();
+            snapshot.update(lastDrawnStep, simulator.getField(), overlay);
+            shownHistory.copyFrom(history);
+        }
+        updateCanvas(snapshot);
     }
 
     /**
@@ -105,30 +225,56 @@ public class SimulatorView extends Application {
     }
 
     /**
-     * Shows the current status of the field.
-     * @param generation The current generation.
-     * @param field The field whose status is to be displayed.
+     * Shows the status of the field at a step.
+     * @param snapshot A copy of the field at that step.
      */ 
-    public void updateCanvas(int generation, Field field) {
+    public void updateCanvas(FieldSnapshot snapshot) {
+        int generation = snapshot.getStep();
+        long time = StepMetrics.start();
+        SimulationEvents.RenderFrame event = new SimulationEvents.RenderFrame();
+        event.begin();
         genLabel.setText(GENERATION_PREFIX + generation);
-        stats.reset();
-        
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Animal animal = field.getObjectAt(row, col);
-                
-                if (animal != null && animal.isAlive()) {
-                    stats.incrementCount(animal.getClass());
-                    fieldCanvas.drawMark(col, row, animal.getColor());
-                }
-                else {
-                    fieldCanvas.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
+        stats.generateCounts(snapshot.getCounts());
+        fieldCanvas.render(snapshot);
+        if (snapshot.getActivityKind() >= 0) {
+            fieldCanvas.renderActivity(snapshot);
         }
+        chart.draw(shownHistory);
         
-        stats.countFinished();
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
+        // The counts were just generated, so the field itself is not read.
+        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(simulator.getField()));
+        
+        if (selecting) {
+            int top = Math.min(selectRow, selectEndRow);
+            int left = Math.min(selectCol, selectEndCol);
+            int bottom = Math.max(selectRow, selectEndRow);
+            int right = Math.max(selectCol, selectEndCol);
+            stats.buildRegionTable(snapshot);
+            fieldCanvas.drawSelection(top, left, bottom, right);
+            setInfoText("Selection: " + stats.getRegionDetails(top, left, bottom, right));
+        }
+        if (StepMetrics.ENABLED) {
+            StepMetrics.recordRender(System.nanoTime() - time);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.step = generation;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Keeps a row picked with the mouse inside the grid.
+     */
+    private int clampRow(int row) {
+        return Math.max(0, Math.min(row, GRID_HEIGHT - 1));
+    }
+    
+    /**
+     * Keeps a column picked with the mouse inside the grid.
+     */
+    private int clampCol(int col) {
+        return Math.max(0, Math.min(col, GRID_WIDTH - 1));
     }
     
     /**
@@ -138,12 +284,10 @@ public class SimulatorView extends Application {
         HBox legendBox = new HBox(10);
         legendBox.setSpacing(15);
     
-        addLegendItem(legendBox, "Crocodile", Color.DARKGREEN);
-        addLegendItem(legendBox, "Jaguar", Color.GOLD);
-        addLegendItem(legendBox, "Squirrel", Color.DIMGRAY);
-        addLegendItem(legendBox, "Capybara", Color.SADDLEBROWN);
-        addLegendItem(legendBox, "Deer", Color.PERU);
-        addLegendItem(legendBox, "Plant", Color.FORESTGREEN);
+        int[] order = {Species.CROCODILE, Species.JAGUAR, Species.SQUIRREL, Species.CAPYBARA, Species.DEER, Species.PLANT};
+        for (int species : order) {
+            addLegendItem(legendBox, Species.getName(species), Species.getColor(species));
+        }
     
         return legendBox;
     }
@@ -179,22 +323,94 @@ public class SimulatorView extends Application {
     public void simulate(int numStep) {
         new Thread(() -> {
             for (int gen = 1; gen <= numStep; gen++) {
-                simulator.simulateOneStep();    
-                simulator.delay(100);
-                Platform.runLater(() -> {
-                    updateCanvas(simulator.getStep(), simulator.getField());
-                });
+                try {
+                    control.awaitNextStep();
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+                long start = System.nanoTime();
+                synchronized (simulator) {
+                    simulator.simulateOneStep();
+                    recordPopulations();
+                }
+                control.stepCompleted(System.nanoTime() - start);
+                if (control.takeCheckpointRequest()) {
+                    saveReplayLog();
+                }
+            }
+            saveReplayLog();
+            if (StepMetrics.ENABLED) {
+                System.out.print(StepMetrics.summary());
             }
-            
         }).start();
     }
 
+    /**
+     * Adds the populations after the latest step to the history, and
+     * passes them to the control MBean, from the field's spatial index.
+     * Called holding the simulator's lock, after every step whether or
+     * not it is drawn.
+     */
+    private void recordPopulations() {
+        SpatialIndex index = simulator.getField().getIndex();
+        for (int species = 0; species < Species.COUNT; species++) {
+            stepCounts[species] = index.getTotal(species);
+        }
+        history.record(simulator.getStep(), stepCounts);
+        control.setPopulations(stepCounts);
+    }
+
+    /**
+     * Registers the control MBean and starts the metrics endpoint, so the
+     * run can be watched and steered while it goes.
+     */
+    private void startMonitoring() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(control, new ObjectName(CONTROL_MBEAN_NAME));
+        }
+        catch (JMException e) {
+            System.out.println("Could not register control MBean: " + e.getMessage());
+        }
+        try {
+            new MetricsEndpoint(MetricsEndpoint.DEFAULT_PORT, control);
+        }
+        catch (IOException e) {
+            System.out.println("Could not start metrics endpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the replay log of this run so it can be re-executed later.
+     */
+    private void saveReplayLog() {
+        SimulationEvents.Checkpoint event = new SimulationEvents.Checkpoint();
+        event.begin();
+        try {
+            replayLog.save(REPLAY_FILE);
+            event.end();
+            if (event.shouldCommit()) {
+                event.step = simulator.getStep();
+                event.path = REPLAY_FILE;
+                event.bytes = new File(REPLAY_FILE).length();
+                event.commit();
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Could not save replay log: " + e.getMessage());
+        }
+    }
+
     /**
      * Resets the simulation to a starting position.
      */
     public void reset() {
-        simulator.reset();
-        updateCanvas(simulator.getStep(), simulator.getField());
+        synchronized (simulator) {
+            simulator.reset();
+            history.clear();
+            recordPopulations();
+        }
+        redraw();
     }
     
     /**
@@ -0,0 +1,285 @@
+import java.util.Arrays;
+
+/**
+ * Counts how many animals of each species sit in each block of the field,
+ * so that questions like "is there any prey within R cells" or "where is
+ * the nearest prey" only have to look inside the few blocks that actually
+ * hold that species, instead of scanning every cell within range.
+ *
+ * The field keeps the counts up to date as animals are placed and cleared.
+ * Distances are measured in moves (the larger of the row and column
+ * differences), as animals move diagonally as easily as straight.
+ *
+ * Herd and pack sizes (see density) are asked for on every catch, so they
+ * are answered in constant time from a summed-area table of the species,
+ * built the first time it is asked for in a step. They therefore count
+ * animals where they were when the step began.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class SpatialIndex {
+
+    // Blocks are BLOCK_SIZE x BLOCK_SIZE cells.
+    private static final int BLOCK_SHIFT = 3;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private Field field;
+    private int blockRows, blockCols;
+    private int[][] counts;
+    private int[] totals = new int[Species.COUNT];
+    // Summed-area tables of each species, and whether each is up to date this step.
+    private int[][] tables = new int[Species.COUNT][];
+    private boolean[] tableBuilt = new boolean[Species.COUNT];
+
+    /**
+     * Creates an empty index for the given field.
+     * @param field The field to index.
+     */
+    public SpatialIndex(Field field) {
+        this.field = field;
+        blockRows = (field.getDepth() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        blockCols = (field.getWidth() + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        counts = new int[Species.COUNT][blockRows * blockCols];
+    }
+
+    /**
+     * Records an animal of the given species arriving at a cell.
+     */
+    public void add(int species, int row, int col) {
+        counts[species][block(row, col)]++;
+        totals[species]++;
+    }
+
+    /**
+     * Records an animal of the given species leaving a cell.
+     */
+    public void remove(int species, int row, int col) {
+        counts[species][block(row, col)]--;
+        totals[species]--;
+    }
+
+    /**
+     * Empties the index.
+     */
+    public void clear() {
+        for (int[] speciesCounts : counts) {
+            Arrays.fill(speciesCounts, 0);
+        }
+        Arrays.fill(totals, 0);
+        Arrays.fill(tableBuilt, false);
+    }
+
+    /**
+     * Marks the start of a step, so that density counts are taken afresh.
+     */
+    public void newStep() {
+        Arrays.fill(tableBuilt, false);
+    }
+
+    /**
+     * @param species The species number (see Species).
+     * @return The number of animals of that species in the whole field.
+     */
+    public int getTotal(int species) {
+        return totals[species];
+    }
+
+    /**
+     * Counts the animals of one species inside a rectangle of cells.
+     * Whole blocks are read from the counts; only the cells of blocks cut
+     * by the edge of the rectangle are looked at one by one.
+     * @param species The species number (see Species).
+     * @param top The first row of the rectangle.
+     * @param left The first column of the rectangle.
+     * @param bottom The last row of the rectangle.
+     * @param right The last column of the rectangle.
+     * @return The number of animals of that species in the rectangle.
+     */
+    public int count(int species, int top, int left, int bottom, int right) {
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, field.getDepth() - 1);
+        right = Math.min(right, field.getWidth() - 1);
+        int total = 0;
+        for (int br = top >> BLOCK_SHIFT; br <= bottom >> BLOCK_SHIFT; br++) {
+            for (int bc = left >> BLOCK_SHIFT; bc <= right >> BLOCK_SHIFT; bc++) {
+                int blockCount = counts[species][br * blockCols + bc];
+                if (blockCount == 0) {
+                    continue;
+                }
+                int blockTop = br << BLOCK_SHIFT;
+                int blockLeft = bc << BLOCK_SHIFT;
+                if (blockTop >= top && blockTop + BLOCK_SIZE - 1 <= bottom
+                        && blockLeft >= left && blockLeft + BLOCK_SIZE - 1 <= right) {
+                    total += blockCount;
+                }
+                else {
+                    total += scanCount(species, Math.max(top, blockTop), Math.max(left, blockLeft),
+                                       Math.min(bottom, blockTop + BLOCK_SIZE - 1),
+                                       Math.min(right, blockLeft + BLOCK_SIZE - 1));
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Counts how many living animals of a species were within the radius
+     * of a location when the step began, that is in the square of cells at
+     * most that many moves away. Read in constant time from the species'
+     * summed-area table.
+     * @param species The species number (see Species).
+     * @param location The centre of the area.
+     * @param radius How many moves away to count.
+     * @return The number of animals of that species within the radius.
+     */
+    public int density(int species, Location location, int radius) {
+        if (!tableBuilt[species]) {
+            buildTable(species);
+        }
+        int tableWidth = field.getWidth() + 1;
+        int top = Math.max(location.getRow() - radius, 0);
+        int left = Math.max(location.getCol() - radius, 0);
+        int bottom = Math.min(location.getRow() + radius, field.getDepth() - 1) + 1;
+        int right = Math.min(location.getCol() + radius, field.getWidth() - 1) + 1;
+        int[] table = tables[species];
+        return table[bottom * tableWidth + right] - table[top * tableWidth + right]
+               - table[bottom * tableWidth + left] + table[top * tableWidth + left];
+    }
+
+    /**
+     * Builds the summed-area table of a species from the field as it is now.
+     */
+    private void buildTable(int species) {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        int tableWidth = width + 1;
+        if (tables[species] == null) {
+            tables[species] = new int[(depth + 1) * tableWidth];
+        }
+        int[] table = tables[species];
+        for (int row = 0; row < depth; row++) {
+            int rowCount = 0;
+            for (int col = 0; col < width; col++) {
+                Animal animal = field.getObjectAt(row, col);
+                if (animal != null && animal.isAlive() && Species.indexOf(animal) == species) {
+                    rowCount++;
+                }
+                int here = (row + 1) * tableWidth + col + 1;
+                table[here] = table[here - tableWidth] + rowCount;
+            }
+        }
+        tableBuilt[species] = true;
+    }
+
+    /**
+     * Checks whether any animal of one of the given species is within range.
+     * @param speciesMask A bit (1 << species) for each species to look for.
+     * @param location Where to look from.
+     * @param radius How many moves away to look.
+     * @return true if there is one.
+     */
+    public boolean anyWithin(int speciesMask, Location location, int radius) {
+        return nearest(speciesMask, location, radius) != null;
+    }
+
+    /**
+     * Finds the nearest living animal of one of the given species. Blocks
+     * are searched in rings outward from the starting point, and the
+     * search stops as soon as no unsearched block could hold anything
+     * closer than what has been found.
+     * @param speciesMask A bit (1 << species) for each species to look for.
+     * @param location Where to look from.
+     * @param radius How many moves away to look.
+     * @return The location of the nearest such animal, or null if there is none in range.
+     */
+    public Location nearest(int speciesMask, Location location, int radius) {
+        StepMetrics.countNeighbourQuery();
+        int row = location.getRow();
+        int col = location.getCol();
+        int homeRow = row >> BLOCK_SHIFT;
+        int homeCol = col >> BLOCK_SHIFT;
+        Location best = null;
+        int bestDistance = radius + 1;
+
+        // In a crowded field the nearest is usually adjacent, and nothing can beat that.
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, field.getDepth() - 1); r++) {
+            for (int c = Math.max(col - 1, 0); c <= Math.min(col + 1, field.getWidth() - 1); c++) {
+                Animal animal = field.getObjectAt(r, c);
+                if ((r != row || c != col) && animal != null && animal.isAlive()
+                        && (speciesMask & (1 << Species.indexOf(animal))) != 0) {
+                    return new Location(r, c);
+                }
+            }
+        }
+
+        for (int ring = 0; (ring - 1) * BLOCK_SIZE + 1 < bestDistance; ring++) {
+            for (int br = homeRow - ring; br <= homeRow + ring; br++) {
+                if (br < 0 || br >= blockRows) {
+                    continue;
+                }
+                // Inner rows of the ring only have a block at each end.
+                int step = (br == homeRow - ring || br == homeRow + ring) ? 1 : Math.max(2 * ring, 1);
+                for (int bc = homeCol - ring; bc <= homeCol + ring; bc += step) {
+                    if (bc < 0 || bc >= blockCols || !holdsAny(speciesMask, br * blockCols + bc)) {
+                        continue;
+                    }
+                    // Only look at the part of the block closer than the best so far.
+                    int firstRow = Math.max(br << BLOCK_SHIFT, row - bestDistance + 1);
+                    int firstCol = Math.max(bc << BLOCK_SHIFT, col - bestDistance + 1);
+                    int lastRow = Math.min(Math.min((br + 1) << BLOCK_SHIFT, field.getDepth()), row + bestDistance);
+                    int lastCol = Math.min(Math.min((bc + 1) << BLOCK_SHIFT, field.getWidth()), col + bestDistance);
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = firstCol; c < lastCol; c++) {
+                            int distance = Math.max(Math.abs(r - row), Math.abs(c - col));
+                            if (distance > 0 && distance < bestDistance) {
+                                Animal animal = field.getObjectAt(r, c);
+                                if (animal != null && animal.isAlive()
+                                        && (speciesMask & (1 << Species.indexOf(animal))) != 0) {
+                                    best = new Location(r, c);
+                                    bestDistance = distance;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Whether a block holds any animal of the given species.
+     */
+    private boolean holdsAny(int speciesMask, int block) {
+        for (int species = 0; species < Species.COUNT; species++) {
+            if ((speciesMask & (1 << species)) != 0 && counts[species][block] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts animals of a species by looking at each cell of a rectangle.
+     */
+    private int scanCount(int species, int top, int left, int bottom, int right) {
+        int total = 0;
+        for (int r = top; r <= bottom; r++) {
+            for (int c = left; c <= right; c++) {
+                Animal animal = field.getObjectAt(r, c);
+                if (animal != null && animal.isAlive() && Species.indexOf(animal) == species) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of the block holding a cell.
+     */
+    private int block(int row, int col) {
+        return (row >> BLOCK_SHIFT) * blockCols + (col >> BLOCK_SHIFT);
+    }
+}
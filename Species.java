@@ -0,0 +1,71 @@
+import javafx.scene.paint.Color;
+
+/**
+ * Numbers the species of the simulation, so that per-species data can be
+ * kept in plain arrays rather than looked up by class.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class Species {
+
+    public static final int PLANT = 0;
+    public static final int DEER = 1;
+    public static final int CAPYBARA = 2;
+    public static final int SQUIRREL = 3;
+    public static final int JAGUAR = 4;
+    public static final int CROCODILE = 5;
+    public static final int COUNT = 6;
+
+    private static final Class<?>[] TYPES = {Plant.class, Deer.class, Capybara.class, Squirrel.class,
+                                             Jaguar.class, Crocodile.class};
+    private static final String[] NAMES = {"Plant", "Deer", "Capybara", "Squirrel", "Jaguar", "Crocodile"};
+    private static final Color[] COLORS = {Color.FORESTGREEN, Color.PERU, Color.SADDLEBROWN, Color.DIMGRAY,
+                                           Color.GOLD, Color.DARKGREEN};
+
+    /**
+     * @param animal An animal (or plant).
+     * @return The species number of the animal.
+     */
+    public static int indexOf(Animal animal) {
+        if (animal instanceof Deer) {
+            return DEER;
+        }
+        else if (animal instanceof Capybara) {
+            return CAPYBARA;
+        }
+        else if (animal instanceof Squirrel) {
+            return SQUIRREL;
+        }
+        else if (animal instanceof Jaguar) {
+            return JAGUAR;
+        }
+        else if (animal instanceof Crocodile) {
+            return CROCODILE;
+        }
+        return PLANT;
+    }
+
+    /**
+     * @param species A species number.
+     * @return The class of the species' animals.
+     */
+    public static Class<?> getType(int species) {
+        return TYPES[species];
+    }
+
+    /**
+     * @param species A species number.
+     * @return The name of the species.
+     */
+    public static String getName(int species) {
+        return NAMES[species];
+    }
+
+    /**
+     * @param species A species number.
+     * @return The color the species is shown in.
+     */
+    public static Color getColor(int species) {
+        return COLORS[species];
+    }
+}
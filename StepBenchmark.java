@@ -0,0 +1,165 @@
+import java.util.Random;
+import javafx.scene.paint.Color;
+
+/**
+ * A small timing harness for comparing ways of running the simulation.
+ * Each case is warmed up first so the JIT has compiled the step code,
+ * then timed over a fixed number of steps from the same seed.
+ *
+ * Run with: java StepBenchmark [dispatch|vision|phases]
+ * (phases needs -Dmetrics=true, see StepMetrics)
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class StepBenchmark {
+
+    private static final long SEED = 1111;
+    private static final int DEPTH = 200;
+    private static final int WIDTH = 200;
+    private static final int WARMUP_STEPS = 200;
+    private static final int TIMED_STEPS = 200;
+    private static final int ROUNDS = 5;
+    private static final int VISION_FIELD_SIZE = 300;
+    private static final int VISION_QUERIES = 20000;
+    private static final double SPARSE_PREY_DENSITY = 0.002;
+    private static final int PREY = (1 << Species.SQUIRREL) | (1 << Species.CAPYBARA) | (1 << Species.DEER);
+
+    /**
+     * Runs the named comparison, or every comparison, and prints the results.
+     */
+    public static void main(String[] args) {
+        String which = args.length > 0 ? args[0] : "all";
+        if (which.equals("all") || which.equals("dispatch")) {
+            compareDispatch();
+        }
+        if (which.equals("all") || which.equals("vision")) {
+            compareVision();
+        }
+        if (which.equals("phases")) {
+            reportPhases();
+        }
+    }
+
+    /**
+     * Compares acting on the mixed animal list against acting species by
+     * species, where each act() call site only sees one class.
+     */
+    private static void compareDispatch() {
+        for (int round = 1; round <= ROUNDS; round++) {
+            double mixed = timeSteps(false);
+            double batched = timeSteps(true);
+            System.err.printf("round %d: mixed list %.3f ms/step, species batched %.3f ms/step%n",
+                              round, mixed, batched);
+        }
+    }
+
+    /**
+     * @param batched Whether to act species by species.
+     * @return The mean time per step in milliseconds, after warmup.
+     */
+    private static double timeSteps(boolean batched) {
+        Randomizer.setSeed(SEED);
+        Simulator simulator = new Simulator(DEPTH, WIDTH);
+        simulator.setSpeciesBatched(batched);
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            simulator.simulateOneStep();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_STEPS; i++) {
+            simulator.simulateOneStep();
+        }
+        return (System.nanoTime() - start) / 1e6 / TIMED_STEPS;
+    }
+
+    /**
+     * Runs the timed steps with metrics on and prints where their time went.
+     */
+    private static void reportPhases() {
+        if (!StepMetrics.ENABLED) {
+            System.err.println("Run with -Dmetrics=true to measure phases.");
+            return;
+        }
+        Randomizer.setSeed(SEED);
+        Simulator simulator = new Simulator(DEPTH, WIDTH);
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            simulator.simulateOneStep();
+        }
+        StepMetrics.reset();
+        for (int i = 0; i < TIMED_STEPS; i++) {
+            simulator.simulateOneStep();
+        }
+        System.err.print(StepMetrics.summary());
+    }
+
+    /**
+     * Compares finding the nearest prey by scanning every cell in range
+     * against asking the field's SpatialIndex, for a range of radii, on a
+     * freshly populated (crowded) field and on one where prey is scarce.
+     */
+    private static void compareVision() {
+        Randomizer.setSeed(SEED);
+        Field crowded = new Simulator(VISION_FIELD_SIZE, VISION_FIELD_SIZE).getField();
+        Field sparse = new Field(VISION_FIELD_SIZE, VISION_FIELD_SIZE);
+        Random rand = new Random(SEED);
+        for (int i = 0; i < VISION_FIELD_SIZE * VISION_FIELD_SIZE * SPARSE_PREY_DENSITY; i++) {
+            Location location = new Location(rand.nextInt(VISION_FIELD_SIZE), rand.nextInt(VISION_FIELD_SIZE));
+            new Deer(true, sparse, location, Color.PERU, null, true, null);
+        }
+
+        Location[] from = new Location[VISION_QUERIES];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = new Location(rand.nextInt(VISION_FIELD_SIZE), rand.nextInt(VISION_FIELD_SIZE));
+        }
+
+        for (int radius = 2; radius <= 32; radius *= 2) {
+            timeVision("crowded", crowded, from, radius);
+            timeVision("sparse", sparse, from, radius);
+        }
+    }
+
+    /**
+     * Times both ways of finding the nearest prey from each starting point.
+     */
+    private static void timeVision(String name, Field field, Location[] from, int radius) {
+        long scanTime = 0;
+        long indexTime = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Location location : from) {
+                nearestByScan(field, location, radius);
+            }
+            scanTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Location location : from) {
+                field.getIndex().nearest(PREY, location, radius);
+            }
+            indexTime = System.nanoTime() - start;
+        }
+        System.err.printf("%-7s radius %2d: scan %6.0f ns/query, index %6.0f ns/query%n",
+                          name, radius, (double) scanTime / from.length, (double) indexTime / from.length);
+    }
+
+    /**
+     * Finds the nearest prey by looking at every cell within the radius,
+     * in order of distance.
+     */
+    private static Location nearestByScan(Field field, Location location, int radius) {
+        int row = location.getRow();
+        int col = location.getCol();
+        for (int distance = 1; distance <= radius; distance++) {
+            for (int r = row - distance; r <= row + distance; r++) {
+                for (int c = col - distance; c <= col + distance; c++) {
+                    boolean onRing = Math.abs(r - row) == distance || Math.abs(c - col) == distance;
+                    if (onRing && r >= 0 && r < field.getDepth() && c >= 0 && c < field.getWidth()) {
+                        Animal animal = field.getObjectAt(r, c);
+                        if (animal != null && animal.isAlive() && (PREY & (1 << Species.indexOf(animal))) != 0) {
+                            return new Location(r, c);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,268 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures where the time of each step goes, and counts what happens in
+ * it: how long each phase takes, how many neighbourhood queries are made,
+ * births, deaths by cause, and how many bytes the simulation thread
+ * allocates per step.
+ *
+ * Metrics are off unless the program is started with -Dmetrics=true.
+ * ENABLED is a constant, so when it is false the JIT removes every call
+ * below entirely and they cost nothing.
+ *
+ * Phase times are added up over a step and recorded, once per step, into
+ * a LatencyHistogram per phase. Everything except the render histogram is
+ * written only by the simulation thread; readers on other threads may see
+ * figures a step out of date.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class StepMetrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("metrics");
+
+    // Phases of a step.
+    public static final int AGING = 0;
+    public static final int BIRTH = 1;
+    public static final int FEEDING = 2;
+    public static final int DISEASE = 3;
+    public static final int PLANTS = 4;
+    public static final int BOOKKEEPING = 5;
+    public static final int PHASES = 6;
+
+    // Causes of death.
+    public static final int OLD_AGE = 0;
+    public static final int STARVATION = 1;
+    public static final int PREDATION = 2;
+    public static final int ILLNESS = 3;
+    public static final int OVERCROWDING = 4;
+    public static final int CAUSES = 5;
+
+    private static final String[] PHASE_NAMES = {"aging", "birth", "feeding", "disease", "plants", "bookkeeping"};
+    private static final String[] CAUSE_NAMES = {"old age", "starvation", "predation", "illness", "overcrowding"};
+
+    private static long[] phaseNanos = new long[PHASES];
+    private static LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASES];
+    private static LatencyHistogram stepHistogram = new LatencyHistogram();
+    private static LatencyHistogram renderHistogram = new LatencyHistogram();
+    private static LatencyHistogram allocationHistogram = new LatencyHistogram();
+    private static long[] deaths = new long[CAUSES];
+    private static long births, neighbourQueries;
+    private static long stepStart, allocatedAtStart;
+
+    static {
+        for (int phase = 0; phase < PHASES; phase++) {
+            phaseHistograms[phase] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return The time now, to time a phase from, or 0 if metrics are off.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since the given start to a phase of this step.
+     * @param phase The phase, such as AGING.
+     * @param start When the phase started (from start() or lap()).
+     * @return The time now, to time the next phase from.
+     */
+    public static long lap(int phase, long start) {
+        if (!ENABLED) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        phaseNanos[phase] += now - start;
+        return now;
+    }
+
+    /**
+     * Marks the start of a step.
+     */
+    public static void stepStarted() {
+        if (ENABLED) {
+            allocatedAtStart = allocatedBytes();
+            stepStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marks the end of a step, recording its phase times and allocation.
+     */
+    public static void stepFinished() {
+        if (!ENABLED) {
+            return;
+        }
+        stepHistogram.record(System.nanoTime() - stepStart);
+        for (int phase = 0; phase < PHASES; phase++) {
+            phaseHistograms[phase].record(phaseNanos[phase]);
+            phaseNanos[phase] = 0;
+        }
+        long allocated = allocatedBytes();
+        if (allocated >= 0) {
+            allocationHistogram.record(allocated - allocatedAtStart);
+        }
+    }
+
+    /**
+     * Records how long drawing a frame took.
+     * @param nanos The time taken.
+     */
+    public static synchronized void recordRender(long nanos) {
+        if (ENABLED) {
+            renderHistogram.record(nanos);
+        }
+    }
+
+    /**
+     * Counts one look at a cell's neighbourhood.
+     */
+    public static void countNeighbourQuery() {
+        if (ENABLED) {
+            neighbourQueries++;
+        }
+    }
+
+    /**
+     * Counts one animal being born.
+     */
+    public static void countBirth() {
+        if (ENABLED) {
+            births++;
+        }
+    }
+
+    /**
+     * Counts one animal dying.
+     * @param cause The cause, such as STARVATION.
+     */
+    public static void countDeath(int cause) {
+        if (ENABLED) {
+            deaths[cause]++;
+        }
+    }
+
+    /**
+     * @param phase The phase, such as AGING.
+     * @return The time the phase took each step, in nanoseconds.
+     */
+    public static LatencyHistogram getPhaseHistogram(int phase) {
+        return phaseHistograms[phase];
+    }
+
+    /**
+     * @return The time each step took, in nanoseconds.
+     */
+    public static LatencyHistogram getStepHistogram() {
+        return stepHistogram;
+    }
+
+    /**
+     * @return The time each frame took to draw, in nanoseconds.
+     */
+    public static LatencyHistogram getRenderHistogram() {
+        return renderHistogram;
+    }
+
+    /**
+     * @return The bytes the simulation thread allocated each step.
+     */
+    public static LatencyHistogram getAllocationHistogram() {
+        return allocationHistogram;
+    }
+
+    /**
+     * @param cause The cause, such as STARVATION.
+     * @return The number of animals that have died of it.
+     */
+    public static long getDeaths(int cause) {
+        return deaths[cause];
+    }
+
+    /**
+     * @return The number of animals born.
+     */
+    public static long getBirths() {
+        return births;
+    }
+
+    /**
+     * @return The number of neighbourhood queries made.
+     */
+    public static long getNeighbourQueries() {
+        return neighbourQueries;
+    }
+
+    /**
+     * @return The name of a phase.
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * @return The name of a cause of death.
+     */
+    public static String getCauseName(int cause) {
+        return CAUSE_NAMES[cause];
+    }
+
+    /**
+     * Forgets everything measured so far.
+     */
+    public static synchronized void reset() {
+        for (int phase = 0; phase < PHASES; phase++) {
+            phaseHistograms[phase].reset();
+        }
+        stepHistogram.reset();
+        renderHistogram.reset();
+        allocationHistogram.reset();
+        for (int cause = 0; cause < CAUSES; cause++) {
+            deaths[cause] = 0;
+        }
+        births = 0;
+        neighbourQueries = 0;
+    }
+
+    /**
+     * @return A few lines summarising everything measured so far.
+     */
+    public static String summary() {
+        StringBuilder text = new StringBuilder();
+        appendTimes(text, "step", stepHistogram);
+        for (int phase = 0; phase < PHASES; phase++) {
+            appendTimes(text, PHASE_NAMES[phase], phaseHistograms[phase]);
+        }
+        appendTimes(text, "render", renderHistogram);
+        text.append(String.format("allocated per step: mean %.0f bytes, p99 %d bytes%n",
+                                  allocationHistogram.getMean(), allocationHistogram.getValueAtPercentile(99)));
+        text.append("births: ").append(births).append(", neighbour queries: ").append(neighbourQueries);
+        text.append(System.lineSeparator()).append("deaths:");
+        for (int cause = 0; cause < CAUSES; cause++) {
+            text.append(' ').append(CAUSE_NAMES[cause]).append(' ').append(deaths[cause]);
+        }
+        return text.append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * Adds one line of timings, in microseconds, to a summary.
+     */
+    private static void appendTimes(StringBuilder text, String name, LatencyHistogram histogram) {
+        text.append(String.format("%-12s mean %8.1f us, p50 %8.1f us, p99 %8.1f us, max %8.1f us%n", name,
+                                  histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                                  histogram.getValueAtPercentile(99) / 1000.0, histogram.getMax() / 1000.0));
+    }
+
+    /**
+     * @return The bytes the current thread has allocated so far, or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
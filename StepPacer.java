@@ -0,0 +1,104 @@
+/**
+ * Decides how fast the simulation runs: at a target number of steps per
+ * second, as fast as it can, or as fast as it can for a set number of
+ * steps (fast-forward) before going back to the previous pace.
+ *
+ * At a target rate, each step is started on a fixed schedule rather
+ * than after a fixed sleep, so the time the step itself takes does not
+ * slow the rate down. If a step overruns the schedule, the schedule
+ * starts again from now instead of rushing to catch up.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class StepPacer {
+
+    public static final int TARGET_RATE = 0;
+    public static final int MAX_SPEED = 1;
+    public static final int FAST_FORWARD = 2;
+
+    private int mode = TARGET_RATE;
+    private int resumeMode = TARGET_RATE;
+    private long interval;
+    private int fastForwardLeft;
+    private long nextStepAt;
+
+    /**
+     * Creates a pacer running at the given rate.
+     * @param stepsPerSecond The target rate.
+     */
+    public StepPacer(double stepsPerSecond) {
+        setTargetRate(stepsPerSecond);
+    }
+
+    /**
+     * Runs at a target number of steps per second.
+     * @param stepsPerSecond The target rate.
+     */
+    public synchronized void setTargetRate(double stepsPerSecond) {
+        interval = (long) (1e9 / Math.max(stepsPerSecond, 0.01));
+        mode = TARGET_RATE;
+        nextStepAt = 0;
+    }
+
+    /**
+     * Runs as fast as the simulation can go.
+     */
+    public synchronized void setMaxSpeed() {
+        mode = MAX_SPEED;
+    }
+
+    /**
+     * Runs the given number of steps as fast as possible, then goes back
+     * to the pace before.
+     * @param steps How many steps to fast-forward.
+     */
+    public synchronized void fastForward(int steps) {
+        if (mode != FAST_FORWARD) {
+            resumeMode = mode;
+        }
+        mode = FAST_FORWARD;
+        fastForwardLeft = steps;
+    }
+
+    /**
+     * @return The current mode, such as TARGET_RATE.
+     */
+    public synchronized int getMode() {
+        return mode;
+    }
+
+    /**
+     * @return The target rate in steps per second (used in TARGET_RATE mode).
+     */
+    public synchronized double getTargetRate() {
+        return 1e9 / interval;
+    }
+
+    /**
+     * Waits until the next step is due.
+     */
+    public void awaitNextStep() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            if (mode == FAST_FORWARD) {
+                if (--fastForwardLeft <= 0) {
+                    mode = resumeMode;
+                    nextStepAt = 0;
+                }
+                return;
+            }
+            if (mode == MAX_SPEED) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (nextStepAt == 0 || now - nextStepAt > interval) {
+                nextStepAt = now;
+            }
+            wait = nextStepAt - now;
+            nextStepAt += interval;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+    }
+}
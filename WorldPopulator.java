@@ -0,0 +1,187 @@
+import java.util.stream.IntStream;
+
+/**
+ * Fills a very large world with its starting animals straight into
+ * AgentRecords, without creating any Animal objects, so that worlds of a
+ * hundred million cells can be set up in seconds.
+ *
+ * The world is cut into square tiles that are filled in parallel. Each
+ * tile draws from its own random streams, seeded from the run's seed and
+ * the tile's number, so the result is the same whatever the number of
+ * threads and whichever order the tiles are done in.
+ *
+ * Simulator.populate starts every simulation from records filled in here.
+ * Species are chosen with the creation chances Simulator lists, using
+ * one random number per cell, and genes are built as numbers (in the
+ * packed form of AgentRecords) rather than strings. Only animals get a
+ * record: every other cell holds a plant.
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class WorldPopulator {
+
+    private static final int TILE_SIZE = 256;
+    // Added to a stream's state for every number drawn (the SplitMix64 step).
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final long ATTRIBUTE_STREAM = 0x5bd1e995L;
+
+    // The species an animal cell holds, checked in this order.
+    private static final int[] SPECIES = {
+        Species.CROCODILE, Species.JAGUAR, Species.CAPYBARA, Species.DEER, Species.SQUIRREL
+    };
+    // The starting food level of each species, indexed by Species constant.
+    private static final float[] FOOD_LEVELS = {0, 20, 15, 12, 30, 35};
+
+    // CUMULATIVE[i] is the chance a cell holds one of SPECIES[0..i].
+    private static final double[] CUMULATIVE = cumulative(
+        Simulator.CROCODILE_CREATION_PROBABILITY, Simulator.JAGUAR_CREATION_PROBABILITY,
+        Simulator.CAPYBARA_CREATION_PROBABILITY, Simulator.DEER_CREATION_PROBABILITY,
+        Simulator.SQUIRREL_CREATION_PROBABILITY);
+
+    /**
+     * Fills a world of the given size with animals.
+     * @param depth Depth of the world.
+     * @param width Width of the world.
+     * @param seed The seed to draw everything from.
+     * @return Records with one record per animal, in tile order.
+     */
+    public static AgentRecords populate(int depth, int width, long seed) {
+        int tileRows = (depth + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = tileRows * tileCols;
+
+        // First count the animals in each tile, so every tile knows where
+        // its records start before any are written.
+        int[] starts = new int[tiles + 1];
+        IntStream.range(0, tiles).parallel().forEach(tile ->
+            starts[tile + 1] = fillTile(null, 0, tile, tileCols, depth, width, seed));
+        for (int tile = 0; tile < tiles; tile++) {
+            starts[tile + 1] += starts[tile];
+        }
+
+        AgentRecords records = new AgentRecords();
+        records.grow(starts[tiles]);
+        IntStream.range(0, tiles).parallel().forEach(tile ->
+            fillTile(records, starts[tile], tile, tileCols, depth, width, seed));
+        return records;
+    }
+
+    /**
+     * Chooses the animals in one tile, writing their records from
+     * the given index, or only counting them if records is null.
+     * @return The number of animals in the tile.
+     */
+    private static int fillTile(AgentRecords records, int index, int tile, int tileCols, int depth, int width, long seed) {
+        int top = tile / tileCols * TILE_SIZE;
+        int left = tile % tileCols * TILE_SIZE;
+        int bottom = Math.min(top + TILE_SIZE, depth);
+        int right = Math.min(left + TILE_SIZE, width);
+        long cells = mix(seed + mix(tile));
+        long attributes = mix(cells ^ ATTRIBUTE_STREAM);
+        int count = 0;
+
+        for (int row = top; row < bottom; row++) {
+            for (int col = left; col < right; col++) {
+                cells += GOLDEN_GAMMA;
+                int species = chooseSpecies((mix(cells) >>> 11) * 0x1.0p-53);
+                if (species < 0) {
+                    continue;
+                }
+                count++;
+                if (records == null) {
+                    continue;
+                }
+
+                // A gene of two-digit breeding age, three-digit life span,
+                // two-digit breeding probability, litter size and disease
+                // probability, and three-digit metabolism, as in Animal.setRandomGene.
+                int lifeSpan = below(attributes += GOLDEN_GAMMA, 111) + 10;
+                long genome = below(attributes += GOLDEN_GAMMA, 79) + 12;
+                genome = genome * 1000 + lifeSpan;
+                genome = genome * 100 + below(attributes += GOLDEN_GAMMA, 51);
+                genome = genome * 100 + below(attributes += GOLDEN_GAMMA, 12) + 1;
+                genome = genome * 100 + below(attributes += GOLDEN_GAMMA, 51);
+                genome = genome * 1000 + below(attributes += GOLDEN_GAMMA, 76) + 25;
+                int age = below(attributes += GOLDEN_GAMMA, lifeSpan);
+                int flags = AgentRecords.ALIVE;
+                if (below(attributes += GOLDEN_GAMMA, 2) == 0) {
+                    flags |= AgentRecords.MALE;
+                }
+                records.set(index++, species, row, col, age, FOOD_LEVELS[species], genome, flags);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param roll A random number in [0, 1).
+     * @return The species a cell with that roll holds, or -1 for a plant.
+     */
+    private static int chooseSpecies(double roll) {
+        for (int i = 0; i < CUMULATIVE.length; i++) {
+            if (roll < CUMULATIVE[i]) {
+                return SPECIES[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Turns the creation chances, tried one after another, into
+     * running totals, so one roll can pick between them.
+     */
+    private static double[] cumulative(double... chances) {
+        double[] totals = new double[chances.length];
+        double left = 1;
+        double total = 0;
+        for (int i = 0; i < chances.length; i++) {
+            total += left * chances[i];
+            left *= 1 - chances[i];
+            totals[i] = total;
+        }
+        return totals;
+    }
+
+    /**
+     * @param state The stream's state after stepping it.
+     * @param bound The number of possible results.
+     * @return A random number from 0 to bound - 1.
+     */
+    private static int below(long state, int bound) {
+        return (int) (((mix(state) >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finaliser).
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Times filling a world of the given size and prints how many of each
+     * species it holds. Large worlds need room for their records outside
+     * the heap, e.g. java -XX:MaxDirectMemorySize=2g WorldPopulator 10000 10000
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : depth;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : Randomizer.getSeed();
+
+        long start = System.nanoTime();
+        AgentRecords records = populate(depth, width, seed);
+        long elapsed = System.nanoTime() - start;
+
+        long[] counts = new long[Species.COUNT];
+        for (int i = 0; i < records.size(); i++) {
+            counts[records.getSpecies(i)]++;
+        }
+        counts[Species.PLANT] = (long) depth * width - records.size();
+        System.err.printf("%d x %d cells in %.2f s%n", depth, width, elapsed / 1e9);
+        for (int species = 0; species < Species.COUNT; species++) {
+            System.err.printf("%-10s %d%n", Species.getName(species), counts[species]);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A starting world saved to disk, so that many runs can start from the
+ * same world without populating it again each time.
+ *
+ * A template file is mapped into memory read-only rather than read in,
+ * and every template opened from the same file shares one mapping. Runs
+ * that start from it copy what they need into their own animals and never
+ * write to the mapped pages, so any number of simulations (and programs)
+ * can share a single copy of the template in memory. The locations and
+ * genes of its animals are read once and shared by every run as well. The records are
+ * mapped in chunks of up to a gigabyte, as a single mapping cannot pass
+ * 2 GB. A template is shared until everyone who opened it has closed it;
+ * its mapping is then dropped and the memory freed once it is collected.
+ *
+ * File layout (little-endian): a 32-byte header of magic number, version,
+ * depth, width, record count (ints) and seed (long), then one 32-byte
+ * record per occupied cell laid out as in AgentRecords: row, col, age
+ * (ints), food level (float), genome (long), species and flags (bytes).
+ *
+ * @author Aditya Ranjan and Abdrakhman Salmenov
+ */
+public class WorldTemplate implements AutoCloseable {
+
+    private static final int MAGIC = 0x57545031;  // "WTP1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int ROW = 0;
+    private static final int COL = 4;
+    private static final int AGE = 8;
+    private static final int FOOD = 12;
+    private static final int GENOME = 16;
+    private static final int SPECIES = 24;
+    private static final int FLAGS = 25;
+
+    // Each chunk maps 2^CHUNK_SHIFT records (1 GB).
+    private static final int CHUNK_SHIFT = 25;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    private static final Map<Path, WorldTemplate> open = new HashMap<>();
+
+    private final Path path;
+    private final MappedByteBuffer[] chunks;
+    private final int depth, width, count;
+    private final long seed;
+    // The location and gene of each record, read on first use and shared
+    // by every run; null for records of dead animals.
+    private Location[] locations;
+    private String[] genes;
+    private int living;
+    // How many times the template has been opened and not yet closed.
+    private int users;
+
+    /**
+     * Reads the header of a template file and maps its records.
+     */
+    private WorldTemplate(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a world template");
+            }
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a world template");
+        }
+        depth = header.getInt(8);
+        width = header.getInt(12);
+        count = header.getInt(16);
+        seed = header.getLong(24);
+        if (count < 0 || channel.size() != HEADER_SIZE + (long) count * RECORD_SIZE) {
+            throw new IOException("World template is truncated");
+        }
+        chunks = map(channel, FileChannel.MapMode.READ_ONLY, count);
+    }
+
+    /**
+     * Maps the records of a template file, one chunk at a time.
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, int count) throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) (((long) count + CHUNK_RECORDS - 1) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = (long) i << CHUNK_SHIFT;
+            long records = Math.min(CHUNK_RECORDS, count - first);
+            chunks[i] = channel.map(mode, HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunks;
+    }
+
+    /**
+     * Saves every animal and plant in a field as a template.
+     * @param field The field, usually freshly populated.
+     * @param seed The seed the field was populated from, kept for reference.
+     * @param path The file to write.
+     */
+    public static void save(Field field, long seed, Path path) throws IOException {
+        long occupied = 0;
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int col = 0; col < field.getWidth(); col++) {
+                if (field.getObjectAt(row, col) != null) {
+                    occupied++;
+                }
+            }
+        }
+        if (occupied > Integer.MAX_VALUE) {
+            throw new IOException("Too many animals for a world template: " + occupied);
+        }
+        int count = (int) occupied;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, field.getDepth());
+            header.putInt(12, field.getWidth());
+            header.putInt(16, count);
+            header.putLong(24, seed);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            MappedByteBuffer[] chunks = map(channel, FileChannel.MapMode.READ_WRITE, count);
+
+            int i = 0;
+            for (int row = 0; row < field.getDepth(); row++) {
+                for (int col = 0; col < field.getWidth(); col++) {
+                    Animal animal = field.getObjectAt(row, col);
+                    if (animal == null) {
+                        continue;
+                    }
+                    MappedByteBuffer out = chunks[i >>> CHUNK_SHIFT];
+                    int base = (i & CHUNK_MASK) * RECORD_SIZE;
+                    int flags = (animal.isAlive() ? AgentRecords.ALIVE : 0) | (animal.isMale() ? AgentRecords.MALE : 0);
+                    out.putInt(base + ROW, row);
+                    out.putInt(base + COL, col);
+                    out.putInt(base + AGE, animal.getAge());
+                    out.putFloat(base + FOOD, (float) animal.getFoodLevel());
+                    out.putLong(base + GENOME, AgentRecords.encodeGene(animal.getGene()));
+                    out.put(base + SPECIES, (byte) Species.indexOf(animal));
+                    out.put(base + FLAGS, (byte) flags);
+                    i++;
+                }
+            }
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * Opens a template file. Opening the same file again before it is
+     * closed returns the same template, so its memory is shared. Each
+     * open must be matched by a close.
+     * @param path The file to open.
+     * @return The template.
+     */
+    public static WorldTemplate open(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        synchronized (open) {
+            WorldTemplate template = open.get(key);
+            if (template == null) {
+                try (FileChannel channel = FileChannel.open(key, StandardOpenOption.READ)) {
+                    template = new WorldTemplate(key, channel);
+                }
+                open.put(key, template);
+            }
+            template.users++;
+            return template;
+        }
+    }
+
+    /**
+     * Closes the template. Once everyone who opened it has closed it, it
+     * is no longer shared, and its memory is freed when it is collected.
+     * Simulations already started from it are not affected.
+     */
+    @Override
+    public void close() {
+        synchronized (open) {
+            if (users > 0 && --users == 0) {
+                open.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Places a copy of every living animal and plant in the template into
+     * a field. The template itself is left unchanged.
+     * @param field An empty field of the template's size.
+     * @param animals A list to receive the new animals.
+     */
+    public void copyInto(Field field, List<Animal> animals) {
+        if (field.getDepth() != depth || field.getWidth() != width) {
+            throw new IllegalArgumentException("Field is " + field.getDepth() + " x " + field.getWidth()
+                                               + " but the template is " + depth + " x " + width);
+        }
+        Location[] locations;
+        String[] genes;
+        synchronized (this) {
+            if (this.locations == null) {
+                readRecords();
+            }
+            locations = this.locations;
+            genes = this.genes;
+        }
+        field.getGenomes().expect(living);
+        for (int i = 0; i < count; i++) {
+            if (locations[i] == null) {
+                continue;
+            }
+            MappedByteBuffer data = chunks[i >>> CHUNK_SHIFT];
+            int base = (i & CHUNK_MASK) * RECORD_SIZE;
+            int species = data.get(base + SPECIES);
+            String sex = (data.get(base + FLAGS) & AgentRecords.MALE) != 0 ? "Male" : "Female";
+            Animal animal = field.getPool().obtain(species, field, locations[i], Species.getColor(species), sex, genes[i]);
+            animal.restoreState(data.getInt(base + AGE), data.getFloat(base + FOOD));
+            animals.add(animal);
+        }
+    }
+
+    /**
+     * Reads the location and gene of every living animal and plant once,
+     * for every run started from the template to share. Both are never
+     * changed, so sharing them is safe, and runs after the first neither
+     * allocate them again nor, as a String keeps its hash code, hash the
+     * genes again when they are counted into a field's GenomePool.
+     */
+    private void readRecords() {
+        locations = new Location[count];
+        genes = new String[count];
+        for (int i = 0; i < count; i++) {
+            MappedByteBuffer data = chunks[i >>> CHUNK_SHIFT];
+            int base = (i & CHUNK_MASK) * RECORD_SIZE;
+            if ((data.get(base + FLAGS) & AgentRecords.ALIVE) != 0) {
+                locations[i] = new Location(data.getInt(base + ROW), data.getInt(base + COL));
+                genes[i] = AgentRecords.decodeGene(data.getLong(base + GENOME));
+                living++;
+            }
+        }
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The seed the template's world was populated from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Saves a template if the file does not exist yet, then compares the
+     * time to populate a world with the time to start one from the template.
+     * Run with: java WorldTemplate file [depth] [width] [runs]
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args[0]);
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : depth;
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        if (!Files.exists(path)) {
+            Simulator simulator = new Simulator(depth, width);
+            save(simulator.getField(), Randomizer.getSeed(), path);
+            System.err.printf("saved %s (%d bytes)%n", path, Files.size(path));
+        }
+        try (WorldTemplate template = open(path)) {
+            for (int run = 1; run <= runs; run++) {
+                long start = System.nanoTime();
+                new Simulator(template.getDepth(), template.getWidth());
+                long populated = System.nanoTime();
+                new Simulator(template);
+                long loaded = System.nanoTime();
+                System.err.printf("run %d: populate %.0f ms, from template %.0f ms%n",
+                                  run, (populated - start) / 1e6, (loaded - populated) / 1e6);
+            }
+        }
+    }
+}